@@ -1,6 +1,7 @@
 package edu.uwb.css534;
 
 import edu.uw.bothell.css.dsl.MASS.Agent;
+import java.util.Arrays;
 
 public class ACO extends Agent {
     public static final int INIT = 0;
@@ -11,7 +12,11 @@ public class ACO extends Agent {
     public static int[] shortestPath; 
     int [][] antRouteGraph;  
     int [] antRoutes; 
+    long [] visitedCities; 
     static double [][] cities; 
+    static double [][] distances;
+    static double [][] heuristics;
+    double [][] choiceInfo;
     public static double [][] antPheromones;
     double [][] deltaPheromones;
     double [][] cityLeftToTraverse
@@ -19,11 +24,10 @@ public class ACO extends Agent {
 
     private static double shortestLength
 ;
-    private Randoms randoms;
+    private RandomSource randoms;
 
     public ACO (Object o) 
     {
-        randoms = new Randoms(21);
     }
    
     /*
@@ -76,7 +80,9 @@ public class ACO extends Agent {
      */
     public Object init() 
     {
-        
+        // every agent draws its own stream, otherwise all ants would build the same tour;
+        // seeded here because the agent only has its id once it has been created
+        randoms = new SplittableRandoms(21, getAgentId());
         this.antRouteGraph = new int[ACO_Mass.TOTAL_CITIES][];
         this.cities = new double[ACO_Mass.TOTAL_CITIES][];
         this.antPheromones = new double[ACO_Mass.TOTAL_CITIES][];
@@ -103,6 +109,7 @@ public class ACO extends Agent {
         }
 
         antRoutes = new int[ACO_Mass.TOTAL_CITIES];
+        visitedCities = new long[(ACO_Mass.TOTAL_CITIES + 63) >>> 6];
         for (int index = 0; index < ACO_Mass.TOTAL_CITIES; index++) 
         {
             antRoutes[index] = -1;
@@ -124,6 +131,12 @@ public class ACO extends Agent {
      */
     public Object optimize() 
     {
+        if (distances == null) 
+        {
+            computeDistances();
+        }
+        // pheromones are shared by every agent, so refresh from whatever the previous round left behind
+        updateChoiceInfo();
 
         while (0 != isRouteValid()) 
         {
@@ -162,11 +175,11 @@ public class ACO extends Agent {
         for (int cityItr = 0; cityItr < ACO_Mass.TOTAL_CITIES; cityItr++) 
         {
             if (cityItr == ACO_Mass.TOTAL_CITIES - 1) {
-                sum += calcDistance(antRoutes[cityItr], antRoutes[0]);
+                sum += distances[antRoutes[cityItr]][antRoutes[0]];
             } 
             else 
             {
-                sum += calcDistance(antRoutes[cityItr], antRoutes[cityItr + 1]);
+                sum += distances[antRoutes[cityItr]][antRoutes[cityItr + 1]];
             }
         }
         return sum;
@@ -177,11 +190,14 @@ public class ACO extends Agent {
      */
     private void route() 
     {
+        Arrays.fill(visitedCities, 0L);
         antRoutes[0] = ACO_Mass.INITIAL_CITY;
+        markVisited(ACO_Mass.INITIAL_CITY);
         for (int cityIteration = 0; cityIteration < ACO_Mass.TOTAL_CITIES - 1; cityIteration++) 
         {
             int cityIndex = antRoutes[cityIteration];
             int count = 0;
+            double total = 0.0;
             for (int index = 0; index < ACO_Mass.TOTAL_CITIES; index++) 
             {
                 if (cityIndex == index) 
@@ -191,8 +207,9 @@ public class ACO extends Agent {
 
                 if (!visited(index)) 
                 {
-                    cityLeftToTraverse[count][0] = calculateProbability(cityIndex,index);
+                    cityLeftToTraverse[count][0] = choiceInfo[cityIndex][index];
                     cityLeftToTraverse[count][1] = (double) index;
+                    total += cityLeftToTraverse[count][0];
                     count++;
                 }
             }
@@ -202,7 +219,9 @@ public class ACO extends Agent {
                 return;
             }
 
-            antRoutes[cityIteration + 1] = city();
+            int nextCity = city(count, total);
+            antRoutes[cityIteration + 1] = nextCity;
+            markVisited(nextCity);
         }
     }
 
@@ -211,6 +230,7 @@ public class ACO extends Agent {
      */
     private int isRouteValid() 
     {
+        Arrays.fill(visitedCities, 0L);
         for (int cityIndex = 0; cityIndex < ACO_Mass.TOTAL_CITIES - 1; cityIndex++) 
         {
             int firstCity = antRoutes[cityIndex];
@@ -219,26 +239,29 @@ public class ACO extends Agent {
             {
                 return -1;
             }
-            for (int index = 0; index < cityIndex - 1; index++) 
+            if (visited(firstCity)) 
             {
-                if (antRoutes[cityIndex] == antRoutes[index]) 
-                {
-                    return -3;
-                }
+                return -3;
             }
+            markVisited(firstCity);
+        }
+        if (visited(antRoutes[ACO_Mass.TOTAL_CITIES - 1])) 
+        {
+            return -3;
         }
+        markVisited(antRoutes[ACO_Mass.TOTAL_CITIES - 1]);
         return 0;
     }
 
     /*
-     * Method to select the next city in the ant route based on probability
+     * Method to select the next city by walking the unnormalised weights in cityLeftToTraverse
      */
-    private int city() 
+    private int city(int count, double total) 
     {
-        double randomGen = randoms.generateUniform();
+        double randomGen = randoms.generateUniform() * total;
         int cityIndex = 0;
         double sum = cityLeftToTraverse[cityIndex][0];
-        while (sum < randomGen) 
+        while (sum < randomGen && cityIndex < count - 1) 
         {
             cityIndex++;
             sum += cityLeftToTraverse[cityIndex][0];
@@ -247,52 +270,70 @@ public class ACO extends Agent {
     }
 
     /*
-     * Method to calculate the probability of moving from one city to another
+     * Method to check if a city has been visited in the current ant route
      */
-    private double calculateProbability(int firstCity, int secondCity) 
+    private boolean visited(int cityIndex) 
     {
-        double attractive = Math.pow(1 / calcDistance(firstCity, secondCity), ACO_Mass.ATTRACTIVENESS);
-        double pheromoneLevel = Math.pow(antPheromones[firstCity][secondCity], ACO_Mass.MAX_PHEROMONE);
-        double sum = 0.0;
-        for (int cityIndex = 0; cityIndex < ACO_Mass.TOTAL_CITIES; cityIndex++) 
-        {
-            if (!visited(cityIndex)) 
-            {
-                double attractiveness_val = Math.pow(1 / calcDistance(firstCity, cityIndex), ACO_Mass.ATTRACTIVENESS);
-                double pheromone_level = Math.pow(antPheromones[firstCity][cityIndex], ACO_Mass.MAX_PHEROMONE);
-                sum += attractiveness_val * pheromone_level;
-            }
+        return (visitedCities[cityIndex >>> 6] & (1L << cityIndex)) != 0;
+    }
 
-        }
-        return (attractive * pheromoneLevel) / sum;
+    /*
+     * Method to mark a city as visited in the tabu bitset
+     */
+    private void markVisited(int cityIndex) 
+    {
+        visitedCities[cityIndex >>> 6] |= 1L << cityIndex;
     }
 
     /*
-     * Method to check if a city has been visited in the current ant route
+     * Method to calculate the Euclidean distance between two cities
      */
-    private boolean visited(int cityIndex) 
+    private static double calcDistance(int firstCity, int secondCity) 
     {
-        for (int cityItr = 0; cityItr < ACO_Mass.TOTAL_CITIES; cityItr++) 
+        return Math.sqrt(Math.pow(cities[firstCity][0] - cities[secondCity][0], 2) 
+                            + Math.pow(cities[firstCity][1] - cities[secondCity][1], 2));
+    }
+
+    /*
+     * Method to cache the distance and the heuristic term eta^beta between every pair of cities
+     */
+    private static synchronized void computeDistances() 
+    {
+        if (distances != null) 
         {
-            if (antRoutes[cityItr] == -1) 
-            {
-                break;
-            }
-            if (antRoutes[cityItr] == cityIndex) 
+            return;
+        }
+        double [][] distanceMatrix = new double[ACO_Mass.TOTAL_CITIES][ACO_Mass.TOTAL_CITIES];
+        double [][] heuristicMatrix = new double[ACO_Mass.TOTAL_CITIES][ACO_Mass.TOTAL_CITIES];
+        for (int firstCity = 0; firstCity < ACO_Mass.TOTAL_CITIES; firstCity++) 
+        {
+            for (int secondCity = 0; secondCity < ACO_Mass.TOTAL_CITIES; secondCity++) 
             {
-                return true;
+                double distance = calcDistance(firstCity, secondCity);
+                distanceMatrix[firstCity][secondCity] = distance;
+                heuristicMatrix[firstCity][secondCity] = (firstCity == secondCity) ? 0.0 : Math.pow(1 / distance, ACO_Mass.ATTRACTIVENESS);
             }
         }
-        return false;
+        heuristics = heuristicMatrix;
+        distances = distanceMatrix;
     }
 
     /*
-     * Method to calculate the Euclidean distance between two cities
+     * Method to refresh the choice-info matrix tau^alpha * eta^beta from the shared pheromones
      */
-    private static double calcDistance(int firstCity, int secondCity) 
+    private void updateChoiceInfo() 
     {
-        return Math.sqrt(Math.pow(cities[firstCity][0] - cities[secondCity][0], 2) 
-                            + Math.pow(cities[firstCity][1] - cities[secondCity][1], 2));
+        if (choiceInfo == null) 
+        {
+            choiceInfo = new double[ACO_Mass.TOTAL_CITIES][ACO_Mass.TOTAL_CITIES];
+        }
+        for (int firstCity = 0; firstCity < ACO_Mass.TOTAL_CITIES; firstCity++) 
+        {
+            for (int secondCity = 0; secondCity < ACO_Mass.TOTAL_CITIES; secondCity++) 
+            {
+                choiceInfo[firstCity][secondCity] = Math.pow(antPheromones[firstCity][secondCity], ACO_Mass.MAX_PHEROMONE) * heuristics[firstCity][secondCity];
+            }
+        }
     }
 
     /*
@@ -323,7 +364,6 @@ public class ACO extends Agent {
      */
     public static void results() 
     {
-        shortestLength += calcDistance(shortestPath[ACO_Mass.TOTAL_CITIES - 1], ACO_Mass.INITIAL_CITY);
         System.out.println(" BEST ROUTE:");
         for (int cityIndex = 0; cityIndex < ACO_Mass.TOTAL_CITIES; cityIndex++) 
         {
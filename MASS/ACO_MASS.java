@@ -35,28 +35,25 @@ public class ACO_Mass {
 
         ants.callAll(ACO.INIT);
 
+        // TOTAL_CITIES sizes the places before the file is read, so the file has to match it
+        TspInstance instance;
         try {
+            instance = TspInstance.load(args[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (instance.size() != TOTAL_CITIES) {
+            throw new IllegalArgumentException(instance.getName() + " has " + instance.size() + " cities but TOTAL_CITIES is " + TOTAL_CITIES);
+        }
+        for (int cityIndex = 0; cityIndex < TOTAL_CITIES; cityIndex++) {
+            DataPOJO data = DataPOJO.build(cityIndex, (int) instance.getX(cityIndex), (int) instance.getY(cityIndex));
 
-            File file = new File(args[0]);
-            BufferedReader bf = new BufferedReader(new FileReader(file));
-            String cityLine;
-            int cityIndex = 0;
-            while ((cityLine = bf.readcityLine()) != null) {
-                String[] lineData = cityLine.split("\t");
-                DataPOJO data = DataPOJO.build(cityIndex,Integer.parseInt(lineData[1]),Integer.parseInt(lineData[2]));
-                
-                ants.callAll(ACO.SET_POSITION, data);
-                for (int destCityIndex = 0; destCityIndex < TOTAL_CITIES; destCityIndex++ )
-                {
-                    if (cityIndex == destCityIndex) continue;
-                    ants.callAll(ACO.CONNECT, (Object) Arrays.asList(cityIndex,destCityIndex).toArray());
-                }
-                cityIndex++;
+            ants.callAll(ACO.SET_POSITION, data);
+            for (int destCityIndex = 0; destCityIndex < TOTAL_CITIES; destCityIndex++ )
+            {
+                if (cityIndex == destCityIndex) continue;
+                ants.callAll(ACO.CONNECT, (Object) Arrays.asList(cityIndex,destCityIndex).toArray());
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }catch (IOException e) {
-            e.printStackTrace();
         }
 
         for (int itr = 0; itr < TOTAL_ITERATIONS; itr++) {
@@ -0,0 +1,82 @@
+package edu.uwb.css534;
+
+/**
+ * SplittableRandoms is the default RandomSource, the SplitMix64 generator behind java.util.SplittableRandom.
+ * A draw is a couple of multiplies and xor-shifts with no table lookups, and streams can be split off
+ * or derived directly from a stream number, so ranks and tasks never have to share a sequence.
+ * The algorithm is spelled out here, giving the same numbers as SplittableRandom, so that its two-word
+ * state can be saved in checkpoints.
+ */
+public class SplittableRandoms implements RandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+    private long gamma;
+
+    public SplittableRandoms(long seed)
+    {
+        this.seed = seed;
+        this.gamma = GOLDEN_GAMMA;
+    }
+
+    /**
+     * Stream number stream of the given seed, for example one per MPI rank, Spark task or MASS agent.
+     * Different stream numbers start at scrambled, unrelated points of the generator's period.
+     */
+    public SplittableRandoms(long seed, long stream)
+    {
+        this(mix(seed + (stream + 1) * GOLDEN_GAMMA));
+    }
+
+    public double generateUniform()
+    {
+        return (mix(nextSeed()) >>> 11) * DOUBLE_UNIT;
+    }
+
+    public RandomSource split()
+    {
+        SplittableRandoms child = new SplittableRandoms(mix(nextSeed()));
+        child.gamma = mixGamma(nextSeed());
+        return child;
+    }
+
+    public long[] getState()
+    {
+        return new long[] {seed, gamma};
+    }
+
+    public void setState(long[] state)
+    {
+        this.seed = state[0];
+        this.gamma = state[1];
+    }
+
+    private long nextSeed()
+    {
+        return seed += gamma;
+    }
+
+    /**
+     * Stafford's variant 13 of the MurmurHash3 finalizer, a bijection on 64-bit values.
+     */
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Odd gamma for a split-off stream, avoiding gammas with too few bit transitions, as SplittableRandom does.
+     */
+    private static long mixGamma(long value)
+    {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        value = (value ^ (value >>> 33)) | 1L;
+        int transitions = Long.bitCount(value ^ (value >>> 1));
+        return transitions < 24 ? value ^ 0xaaaaaaaaaaaaaaaaL : value;
+    }
+}
@@ -0,0 +1,792 @@
+package edu.uwb.css534;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * TspInstance holds the cities of a problem read from disk, so the colony can be sized from the file.
+ * Three formats are understood:
+ * TSPLIB files with a NODE_COORD_SECTION (EUC_2D, CEIL_2D, ATT, GEO) or an EXPLICIT EDGE_WEIGHT_SECTION,
+ * the original cities.txt format of whitespace separated "label x y" records,
+ * and the binary format written by InstanceConverter.
+ * The file is memory-mapped and numbers are parsed straight from the mapped bytes, so a data line costs
+ * no String or array allocation and a million-city file loads in a fraction of a second.
+ *
+ * The binary format is little-endian: a HEADER_SIZE byte header (magic, version, city count,
+ * candidates per city, flags, name and edge weight type lengths, SHA-256 of everything after the header,
+ * the distance weight of the heuristics), then the name and type in ASCII padded to 8 bytes, x and y of
+ * every city, optionally the packed upper triangles of the distance matrix and of the heuristic terms
+ * (1 / d)^beta, and optionally the candidate lists. Distances and heuristics stay in the mapping,
+ * so solvers opening the same file share them through the page cache. Version 1 files, which have a
+ * 64 byte header and no heuristics, are still read. Checking the hash reads every page of the file,
+ * so it is only done when asked for with load(path, true) or "java InstanceConverter verify file".
+ *
+ * The class only needs the JDK, so MPI, Spark and MASS share this one loader: Spark keeps an identical
+ * copy and MASS a copy that differs only by its package line.
+ */
+public class TspInstance {
+
+    static final int MAGIC = 0x494f4341; // "ACOI" read little-endian
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 72;
+    static final int VERSION_1_HEADER_SIZE = 64;
+    static final int HASH_OFFSET = 32;
+    static final int HASH_LENGTH = 32;
+    static final int HEURISTIC_WEIGHT_OFFSET = 64;
+    static final int FLAG_DISTANCES = 1;
+    static final int FLAG_HEURISTICS = 2;
+
+    // Largest instance whose packed distance triangle still fits in one array
+    static final int MAX_MATRIX_SIZE = 65535;
+
+    private final String name;
+    private final String edgeWeightType;
+    private final double[] xs;
+    private final double[] ys;
+    private final DoubleBuffer distances;
+    private final DoubleBuffer heuristics;
+    private final double heuristicWeight;
+    private final int[][] candidateLists;
+    private final String contentHash;
+
+    private TspInstance(String name, String edgeWeightType, double[] xs, double[] ys, DoubleBuffer distances,
+            int[][] candidateLists, String contentHash)
+    {
+        this(name, edgeWeightType, xs, ys, distances, null, 0.0, candidateLists, contentHash);
+    }
+
+    private TspInstance(String name, String edgeWeightType, double[] xs, double[] ys, DoubleBuffer distances,
+            DoubleBuffer heuristics, double heuristicWeight, int[][] candidateLists, String contentHash)
+    {
+        this.name = name;
+        this.edgeWeightType = edgeWeightType;
+        this.xs = xs;
+        this.ys = ys;
+        this.distances = distances;
+        this.heuristics = heuristics;
+        this.heuristicWeight = heuristicWeight;
+        this.candidateLists = candidateLists;
+        this.contentHash = contentHash;
+    }
+
+    public static TspInstance load(String fileName) throws IOException
+    {
+        return load(Paths.get(fileName), false);
+    }
+
+    public static TspInstance load(String fileName, boolean verify) throws IOException
+    {
+        return load(Paths.get(fileName), verify);
+    }
+
+    public static TspInstance load(Path path) throws IOException
+    {
+        return load(path, false);
+    }
+
+    /**
+     * Reads an instance, telling binary files by their magic number and TSPLIB files by their "KEYWORD :" header.
+     * With verify set, a binary file must also match the SHA-256 in its header.
+     */
+    public static TspInstance load(Path path, boolean verify) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE)
+            {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            String fileName = path.getFileName().toString();
+            if (fileSize >= VERSION_1_HEADER_SIZE && buffer.getInt(0) == MAGIC)
+            {
+                return readBinary(buffer, fileName, verify);
+            }
+            Cursor cursor = new Cursor(buffer, path);
+            return cursor.isTsplib() ? readTsplib(cursor, fileName) : readCities(cursor, fileName);
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int size()
+    {
+        return xs.length;
+    }
+
+    public double getX(int city)
+    {
+        return xs[city];
+    }
+
+    public double getY(int city)
+    {
+        return ys[city];
+    }
+
+    /**
+     * The TSPLIB EDGE_WEIGHT_TYPE, one of EUC_2D, CEIL_2D, ATT, GEO and EXPLICIT,
+     * or null for the cities.txt format whose distances are plain Euclidean.
+     */
+    public String getEdgeWeightType()
+    {
+        return edgeWeightType;
+    }
+
+    /**
+     * Distances between all cities as a read-only packed upper triangle, row by row with the diagonal,
+     * given for EXPLICIT instances and for binary files converted with distances, otherwise null.
+     * Use getDistance() or triangleIndex() to address it.
+     */
+    public DoubleBuffer getDistances()
+    {
+        return distances == null ? null : distances.duplicate();
+    }
+
+    /**
+     * Heuristic terms (1 / d)^beta as a read-only packed upper triangle like getDistances(),
+     * when the binary file holds them, otherwise null.
+     */
+    public DoubleBuffer getHeuristics()
+    {
+        return heuristics == null ? null : heuristics.duplicate();
+    }
+
+    /**
+     * The distance weight beta that getHeuristics() was computed with.
+     */
+    public double getHeuristicWeight()
+    {
+        return heuristicWeight;
+    }
+
+    /**
+     * Given distance between two cities, only for instances whose getDistances() is not null.
+     */
+    public double getDistance(int firstCity, int secondCity)
+    {
+        return distances.get(triangleIndex(size(), firstCity, secondCity));
+    }
+
+    /**
+     * Slot of (row, col) in a packed upper triangle of the given size, in either order.
+     */
+    static int triangleIndex(int size, int row, int col)
+    {
+        if (row > col)
+        {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        return (int) (((long) row * (2 * size - row - 1)) >>> 1) + col;
+    }
+
+    /**
+     * Nearest neighbours of every city, closest first, when the binary file holds them, otherwise null.
+     */
+    public int[][] getCandidateLists()
+    {
+        return candidateLists;
+    }
+
+    /**
+     * SHA-256 of the contents of a binary file in hex, for telling instances apart, or null for text files.
+     */
+    public String getContentHash()
+    {
+        return contentHash;
+    }
+
+    /**
+     * Reads "label x y" records. Tokens are counted first so the coordinate arrays are allocated once.
+     */
+    private static TspInstance readCities(Cursor cursor, String fileName) throws IOException
+    {
+        int tokens = cursor.countTokens();
+        if (tokens % 3 != 0)
+        {
+            throw new IOException(fileName + " does not consist of \"label x y\" records");
+        }
+        int size = tokens / 3;
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int city = 0; city < size; city++)
+        {
+            cursor.skipToken();
+            xs[city] = cursor.nextNumber();
+            ys[city] = cursor.nextNumber();
+        }
+        return new TspInstance(fileName, null, xs, ys, null, null, null);
+    }
+
+    private static TspInstance readTsplib(Cursor cursor, String fileName) throws IOException
+    {
+        String name = fileName;
+        String type = null;
+        String edgeWeightType = null;
+        String edgeWeightFormat = null;
+        int size = -1;
+        double[] xs = null;
+        double[] ys = null;
+        DoubleBuffer distances = null;
+
+        String keyword;
+        while ((keyword = cursor.nextKeyword()) != null && !keyword.equals("EOF"))
+        {
+            switch (keyword)
+            {
+                case "NAME":
+                    name = cursor.restOfLine();
+                    break;
+                case "TYPE":
+                    type = cursor.restOfLine();
+                    break;
+                case "DIMENSION":
+                    size = Integer.parseInt(cursor.restOfLine());
+                    break;
+                case "EDGE_WEIGHT_TYPE":
+                    edgeWeightType = cursor.restOfLine();
+                    break;
+                case "EDGE_WEIGHT_FORMAT":
+                    edgeWeightFormat = cursor.restOfLine();
+                    break;
+                case "NODE_COORD_SECTION":
+                case "DISPLAY_DATA_SECTION":
+                    requireDimension(size, keyword);
+                    // display data only stands in for coordinates of explicit instances
+                    boolean keep = xs == null;
+                    double[] sectionXs = keep ? new double[size] : null;
+                    double[] sectionYs = keep ? new double[size] : null;
+                    for (int record = 0; record < size; record++)
+                    {
+                        int city = (int) cursor.nextNumber() - 1;
+                        double x = cursor.nextNumber();
+                        double y = cursor.nextNumber();
+                        if (keep)
+                        {
+                            if (city < 0 || city >= size)
+                            {
+                                throw new IOException(fileName + ": node " + (city + 1) + " is outside DIMENSION " + size);
+                            }
+                            sectionXs[city] = x;
+                            sectionYs[city] = y;
+                        }
+                    }
+                    if (keep)
+                    {
+                        xs = sectionXs;
+                        ys = sectionYs;
+                    }
+                    break;
+                case "EDGE_WEIGHT_SECTION":
+                    requireDimension(size, keyword);
+                    distances = readEdgeWeights(cursor, size, edgeWeightFormat, fileName);
+                    break;
+                case "FIXED_EDGES_SECTION":
+                case "TOUR_SECTION":
+                    // lists closed by -1, not used by the colony
+                    while (cursor.nextNumber() != -1)
+                    {
+                        // skip
+                    }
+                    break;
+                default:
+                    // COMMENT, CAPACITY, DISPLAY_DATA_TYPE and the like
+                    cursor.restOfLine();
+                    break;
+            }
+        }
+
+        if (type != null && !type.equals("TSP"))
+        {
+            throw new IOException(fileName + ": only symmetric TSP instances are supported, not TYPE " + type);
+        }
+        if (edgeWeightType == null)
+        {
+            throw new IOException(fileName + " has no EDGE_WEIGHT_TYPE");
+        }
+        switch (edgeWeightType)
+        {
+            case "EUC_2D":
+            case "CEIL_2D":
+            case "ATT":
+            case "GEO":
+                if (xs == null)
+                {
+                    throw new IOException(fileName + " has no NODE_COORD_SECTION");
+                }
+                break;
+            case "EXPLICIT":
+                if (distances == null)
+                {
+                    throw new IOException(fileName + " has no EDGE_WEIGHT_SECTION");
+                }
+                if (xs == null)
+                {
+                    xs = new double[size];
+                    ys = new double[size];
+                }
+                break;
+            default:
+                throw new IOException(fileName + ": EDGE_WEIGHT_TYPE " + edgeWeightType + " is not supported");
+        }
+        return new TspInstance(name, edgeWeightType, xs, ys, distances, null, null);
+    }
+
+    /**
+     * Reads the listed triangle or matrix into a packed upper triangle.
+     * A column-wise upper triangle lists the same numbers as a row-wise lower one and vice versa.
+     */
+    private static DoubleBuffer readEdgeWeights(Cursor cursor, int size, String format, String fileName) throws IOException
+    {
+        if (size > MAX_MATRIX_SIZE)
+        {
+            throw new IOException(fileName + ": explicit instances are limited to " + MAX_MATRIX_SIZE + " cities");
+        }
+        if (format == null)
+        {
+            throw new IOException(fileName + " has no EDGE_WEIGHT_FORMAT");
+        }
+        // the row-wise layout that lists the same numbers, and whether it includes the diagonal
+        boolean full = false;
+        boolean upper;
+        boolean diagonal;
+        switch (format)
+        {
+            case "FULL_MATRIX":
+                full = true;
+                upper = false;
+                diagonal = true;
+                break;
+            case "UPPER_ROW":
+            case "LOWER_COL":
+                upper = true;
+                diagonal = false;
+                break;
+            case "LOWER_ROW":
+            case "UPPER_COL":
+                upper = false;
+                diagonal = false;
+                break;
+            case "UPPER_DIAG_ROW":
+            case "LOWER_DIAG_COL":
+                upper = true;
+                diagonal = true;
+                break;
+            case "LOWER_DIAG_ROW":
+            case "UPPER_DIAG_COL":
+                upper = false;
+                diagonal = true;
+                break;
+            default:
+                throw new IOException(fileName + ": EDGE_WEIGHT_FORMAT " + format + " is not supported");
+        }
+
+        double[] weights = new double[(int) ((long) size * (size + 1) / 2)];
+        for (int row = 0; row < size; row++)
+        {
+            int from = full ? 0 : upper ? (diagonal ? row : row + 1) : 0;
+            int to = full ? size : upper ? size : (diagonal ? row + 1 : row);
+            for (int col = from; col < to; col++)
+            {
+                weights[triangleIndex(size, row, col)] = cursor.nextNumber();
+            }
+        }
+        return DoubleBuffer.wrap(weights).asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads the binary format. Coordinates and candidate lists are copied out, the distances stay mapped.
+     */
+    private static TspInstance readBinary(MappedByteBuffer buffer, String fileName, boolean verify) throws IOException
+    {
+        int version = buffer.getInt(4);
+        if (version != VERSION && version != 1)
+        {
+            throw new IOException(fileName + " is binary instance version " + version + ", expected " + VERSION);
+        }
+        int headerSize = version == 1 ? VERSION_1_HEADER_SIZE : HEADER_SIZE;
+        if (buffer.limit() < headerSize)
+        {
+            throw new IOException(fileName + " is truncated");
+        }
+        int size = buffer.getInt(8);
+        int candidates = buffer.getInt(12);
+        int flags = buffer.getInt(16);
+        int nameLength = buffer.getInt(20);
+        int typeLength = buffer.getInt(24);
+        double heuristicWeight = version == 1 ? 0.0 : buffer.getDouble(HEURISTIC_WEIGHT_OFFSET);
+        byte[] hash = new byte[HASH_LENGTH];
+        buffer.get(HASH_OFFSET, hash);
+        if (verify && !MessageDigest.isEqual(hash, sha256(buffer.slice(headerSize, buffer.limit() - headerSize))))
+        {
+            throw new IOException(fileName + " does not match the SHA-256 in its header, it is damaged or was changed");
+        }
+
+        long position = headerSize;
+        String name = ascii(buffer, position, nameLength);
+        position += nameLength;
+        String edgeWeightType = typeLength == 0 ? null : ascii(buffer, position, typeLength);
+        position = align(position + typeLength);
+
+        DoubleBuffer coordinates = section(buffer, position, 16L * size, fileName).asDoubleBuffer();
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int city = 0; city < size; city++)
+        {
+            xs[city] = coordinates.get(2 * city);
+            ys[city] = coordinates.get(2 * city + 1);
+        }
+        position += 16L * size;
+
+        DoubleBuffer distances = null;
+        if ((flags & FLAG_DISTANCES) != 0)
+        {
+            long length = 8L * size * (size + 1) / 2;
+            distances = section(buffer, position, length, fileName).asDoubleBuffer();
+            position += length;
+        }
+
+        DoubleBuffer heuristics = null;
+        if ((flags & FLAG_HEURISTICS) != 0)
+        {
+            long length = 8L * size * (size + 1) / 2;
+            heuristics = section(buffer, position, length, fileName).asDoubleBuffer();
+            position += length;
+        }
+
+        int[][] candidateLists = null;
+        if (candidates > 0)
+        {
+            IntBuffer lists = section(buffer, position, 4L * size * candidates, fileName).asIntBuffer();
+            candidateLists = new int[size][candidates];
+            for (int city = 0; city < size; city++)
+            {
+                lists.get(city * candidates, candidateLists[city]);
+            }
+            position = align(position + 4L * size * candidates);
+        }
+
+        if (position != buffer.limit())
+        {
+            throw new IOException(fileName + " has " + (buffer.limit() - position) + " bytes more than its header describes");
+        }
+        return new TspInstance(name, edgeWeightType, xs, ys, distances, heuristics, heuristicWeight, candidateLists, hex(hash));
+    }
+
+    /**
+     * Rounds a file offset up to the next multiple of 8, so every section can be viewed as doubles.
+     */
+    static long align(long position)
+    {
+        return (position + 7) & ~7L;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, long position, long length, String fileName) throws IOException
+    {
+        if (position + length > buffer.limit())
+        {
+            throw new IOException(fileName + " is truncated");
+        }
+        return buffer.slice((int) position, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String ascii(ByteBuffer buffer, long position, int length)
+    {
+        byte[] bytes = new byte[length];
+        buffer.get((int) position, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * SHA-256 of the remaining bytes of the buffer, the content hash of a binary file.
+     */
+    static byte[] sha256(ByteBuffer content)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content);
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes)
+    {
+        StringBuilder text = new StringBuilder(2 * bytes.length);
+        for (byte value : bytes)
+        {
+            text.append(Character.forDigit((value >> 4) & 0xf, 16)).append(Character.forDigit(value & 0xf, 16));
+        }
+        return text.toString();
+    }
+
+    private static void requireDimension(int size, String section) throws IOException
+    {
+        if (size < 0)
+        {
+            throw new IOException(section + " appears before DIMENSION");
+        }
+    }
+
+    /**
+     * Cursor walks the mapped file byte by byte. Only header keywords and values become Strings.
+     */
+    private static class Cursor {
+
+        // Powers of ten that are exact doubles, for parsing short decimals without rounding twice
+        private static final double[] POWERS_OF_TEN = new double[23];
+
+        static
+        {
+            POWERS_OF_TEN[0] = 1.0;
+            for (int power = 1; power < POWERS_OF_TEN.length; power++)
+            {
+                POWERS_OF_TEN[power] = POWERS_OF_TEN[power - 1] * 10.0;
+            }
+        }
+
+        private final MappedByteBuffer buffer;
+        private final Path path;
+        private final int limit;
+        private int position;
+
+        Cursor(MappedByteBuffer buffer, Path path)
+        {
+            this.buffer = buffer;
+            this.path = path;
+            this.limit = buffer.limit();
+        }
+
+        /**
+         * Checks whether the first word is followed by a colon on its line, as in "NAME : eil51".
+         */
+        boolean isTsplib()
+        {
+            int at = position;
+            while (at < limit && isSpace(buffer.get(at)))
+            {
+                at++;
+            }
+            while (at < limit && !isSpace(buffer.get(at)) && buffer.get(at) != ':')
+            {
+                at++;
+            }
+            while (at < limit && (buffer.get(at) == ' ' || buffer.get(at) == '\t'))
+            {
+                at++;
+            }
+            return at < limit && buffer.get(at) == ':';
+        }
+
+        int countTokens()
+        {
+            int tokens = 0;
+            boolean inToken = false;
+            for (int at = position; at < limit; at++)
+            {
+                boolean space = isSpace(buffer.get(at));
+                if (!space && !inToken)
+                {
+                    tokens++;
+                }
+                inToken = !space;
+            }
+            return tokens;
+        }
+
+        void skipToken()
+        {
+            skipSpace();
+            while (position < limit && !isSpace(buffer.get(position)))
+            {
+                position++;
+            }
+        }
+
+        /**
+         * Reads the next word with any trailing colon removed, or null at the end of the file.
+         */
+        String nextKeyword()
+        {
+            skipSpace();
+            int start = position;
+            while (position < limit && !isSpace(buffer.get(position)) && buffer.get(position) != ':')
+            {
+                position++;
+            }
+            return position == start ? null : text(start, position);
+        }
+
+        /**
+         * Reads the value of a "KEYWORD : value" line, skipping the colon.
+         */
+        String restOfLine()
+        {
+            while (position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t' || buffer.get(position) == ':'))
+            {
+                position++;
+            }
+            int start = position;
+            while (position < limit && buffer.get(position) != '\n' && buffer.get(position) != '\r')
+            {
+                position++;
+            }
+            int end = position;
+            while (end > start && isSpace(buffer.get(end - 1)))
+            {
+                end--;
+            }
+            return text(start, end);
+        }
+
+        /**
+         * Parses a decimal number such as 12, -3.5 or 1.2e+03. Up to 18 significant digits and 22 decimals
+         * the result is the correctly rounded double; longer numbers fall back to Double.parseDouble.
+         */
+        double nextNumber() throws IOException
+        {
+            skipSpace();
+            int start = position;
+            boolean negative = false;
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+'))
+            {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int decimals = 0;
+            boolean exact = true;
+            boolean fraction = false;
+            while (position < limit)
+            {
+                byte current = buffer.get(position);
+                if (current >= '0' && current <= '9')
+                {
+                    if (digits < 18)
+                    {
+                        mantissa = mantissa * 10 + (current - '0');
+                        if (mantissa != 0)
+                        {
+                            digits++;
+                        }
+                        if (fraction)
+                        {
+                            decimals++;
+                        }
+                    }
+                    else
+                    {
+                        exact = false;
+                    }
+                }
+                else if (current == '.' && !fraction)
+                {
+                    fraction = true;
+                }
+                else
+                {
+                    break;
+                }
+                position++;
+            }
+            int exponent = 0;
+            if (position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E'))
+            {
+                position++;
+                boolean negativeExponent = false;
+                if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+'))
+                {
+                    negativeExponent = buffer.get(position) == '-';
+                    position++;
+                }
+                int exponentStart = position;
+                while (position < limit && buffer.get(position) >= '0' && buffer.get(position) <= '9')
+                {
+                    exponent = Math.min(exponent * 10 + (buffer.get(position) - '0'), 1000);
+                    position++;
+                }
+                if (position == exponentStart)
+                {
+                    throw error(start);
+                }
+                exponent = negativeExponent ? -exponent : exponent;
+            }
+            if (position == start || (position < limit && !isSpace(buffer.get(position))))
+            {
+                throw error(start);
+            }
+
+            int scale = exponent - decimals;
+            if (exact && mantissa < (1L << 53) && Math.abs(scale) < POWERS_OF_TEN.length)
+            {
+                double value = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+                return negative ? -value : value;
+            }
+            try
+            {
+                return Double.parseDouble(text(start, position));
+            }
+            catch (NumberFormatException e)
+            {
+                throw error(start);
+            }
+        }
+
+        private IOException error(int start)
+        {
+            int end = start;
+            while (end < limit && end - start < 20 && !isSpace(buffer.get(end)))
+            {
+                end++;
+            }
+            return new IOException(path + ": expected a number at byte " + start + " but found \"" + text(start, end) + "\"");
+        }
+
+        private void skipSpace()
+        {
+            while (position < limit && isSpace(buffer.get(position)))
+            {
+                position++;
+            }
+        }
+
+        private String text(int start, int end)
+        {
+            byte[] bytes = new byte[end - start];
+            for (int at = start; at < end; at++)
+            {
+                bytes[at - start] = buffer.get(at);
+            }
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        private static boolean isSpace(byte current)
+        {
+            return current == ' ' || current == '\t' || current == '\n' || current == '\r';
+        }
+    }
+}
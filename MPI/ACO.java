@@ -1,21 +1,179 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToDoubleFunction;
+
 public class ACO {
 
+    // Matrices with fewer slots than this are swept on the calling thread
+    private static final int PARALLEL_SWEEP_THRESHOLD = 1 << 16;
+    private static final int SWEEP_CHUNK_SIZE = 1 << 13;
+    // Dead-end rotations route() may try per city before it starts the tour over
+    private static final int MAX_ROTATIONS_PER_CITY = 16;
+    // Fresh starts an ant may make before the graph is taken to have no Hamiltonian cycle
+    private static final int MAX_ROUTE_RESTARTS = 10;
+    // Lazy evaporation folds the stored pheromones back into real values once the scale drops below this
+    private static final double MIN_PHEROMONE_SCALE = 1e-150;
+    // Same for float pheromones, whose exponent range ends near 1e38
+    private static final double MIN_FLOAT_PHEROMONE_SCALE = 1e-20;
+    // Nearest neighbours tried by the local search when no candidate lists are configured
+    private static final int LOCAL_SEARCH_NEIGHBOURS = 10;
+    // Row sampling draws this many times before it falls back to scanning the unvisited cities
+    private static final int MAX_SAMPLE_REJECTIONS = 8;
+    // MAX-MIN Ant System: chance of rebuilding the best tour once converged, which sets tau_min
+    private static final double MAX_MIN_BEST_PROBABILITY = 0.05;
+    // MAX-MIN Ant System: every this many iterations the best-so-far ant deposits instead of the iteration best
+    private static final int MAX_MIN_BEST_SO_FAR_PERIOD = 10;
+    // MAX-MIN Ant System: convergence is checked every this many iterations with the lambda-branching factor
+    private static final int MAX_MIN_CONVERGENCE_PERIOD = 100;
+    private static final double MAX_MIN_BRANCHING_LAMBDA = 0.05;
+    private static final double MAX_MIN_CONVERGED_BRANCHING = 2.05;
+    // Ant Colony System: chance q0 of taking the best candidate instead of sampling
+    private static final double ACS_GREEDY_PROBABILITY = 0.9;
+    // Ant Colony System: decay xi of the local update applied to every edge an ant uses
+    private static final double ACS_LOCAL_EVAPORATION = 0.1;
+
+    /**
+     * Pheromone update rules the colony can run.
+     */
+    public enum Variant 
+    {
+        // Every ant deposits, pheromone is unbounded
+        ANT_SYSTEM,
+        // Only the iteration-best or best-so-far ant deposits, pheromone is kept within [tau_min, tau_max]
+        // and reset to tau_max once the colony has converged
+        MAX_MIN,
+        // Ants mostly take the best candidate and wear down the edges they use,
+        // only the best-so-far tour deposits
+        ANT_COLONY_SYSTEM
+    }
+
+    /**
+     * How distances are derived from the city coordinates. The TSPLIB metrics round to whole numbers,
+     * which are stored in an IntMatrix so tour lengths are exact sums that compare equal to published optima.
+     */
+    public enum DistanceMetric 
+    {
+        // Plain Euclidean distance, not rounded
+        EUCLIDEAN,
+        // TSPLIB EUC_2D: Euclidean distance rounded to the nearest integer
+        EUC_2D,
+        // TSPLIB CEIL_2D: Euclidean distance rounded up
+        CEIL_2D,
+        // TSPLIB ATT: pseudo-Euclidean distance of the att48 and att532 instances
+        ATT,
+        // TSPLIB GEO: great-circle distance in km, coordinates given as latitude and longitude in DDD.MM
+        GEO,
+        // TSPLIB EXPLICIT: distances given by setDistances()
+        EXPLICIT
+    }
+
+    /**
+     * How pheromones, choice info, distances and heuristics are stored. Pheromone deltas and tour lengths
+     * are always accumulated in double.
+     */
+    public enum Precision 
+    {
+        DOUBLE,
+        // float storage, half the memory and bandwidth of the construction loop
+        FLOAT,
+        // float storage with the heuristics further cut to 16 bits
+        FLOAT_QUANTISED_HEURISTICS
+    }
+
+    /**
+     * Why the last call to optimize() returned.
+     */
+    public enum StopReason 
+    {
+        ITERATIONS,
+        TIME_BUDGET,
+        TARGET_LENGTH,
+        STAGNATION,
+        EVALUATIONS,
+        CANCELLED
+    }
+
     // Parameters for the Ant Colony Optimization algorithm
     private int NUM_ANTS;
     private int START_CITY;
     private int NUM_CITIES;
     private double PHEROMONE_WEIGHT, PHEROMONE_CONSTANT ,DISTANCE_WEIGHT, MAX_PHEROMONE, EVAPORATION_RATE;
     private double shortestLength;
-    private Randoms randoms;
+    private int candidateListSize;
+    private boolean symmetric;
+    private boolean sparse;
+    private boolean offHeap;
+    private String offHeapDirectory;
+    private Precision precision = Precision.DOUBLE;
+    private boolean lazyEvaporation;
+    private boolean localSearch;
+    private double pheromoneScale = 1.0;
+    private Variant variant = Variant.ANT_SYSTEM;
+    private double pheromoneMax;
+    private double pheromoneMin;
+    private double pheromoneInitial;
+    private long timeBudgetMillis;
+    private double targetLength;
+    private int maxStagnantIterations;
+    private long maxEvaluations;
+    private StopReason stopReason;
+    private int iterationsRun;
+    private volatile boolean cancelled;
+    private final List<TourListener> tourListeners = new CopyOnWriteArrayList<>();
+    private int threadCount = 1;
+    private RandomSource randoms;
+    private boolean vectorScoring;
+    private RowScorer rowScorer;
+    private boolean rowSampling;
+    private boolean verifyLengths;
+    private DistanceMetric distanceMetric = DistanceMetric.EUCLIDEAN;
+    private DoubleMatrix precomputedDistances;
+    private DoubleMatrix precomputedHeuristics;
+    private double precomputedHeuristicWeight;
+    private int[][] precomputedCandidates;
+    private String checkpointFile;
+    private int checkpointPeriod;
+    // snapshot handed to the writer thread, reused once its write is done
+    private Checkpoint checkpoint;
+    private ExecutorService checkpointWriter;
+    private Future<?> checkpointWrite;
+    // loaded by resume() and applied by the optimize() it starts
+    private Checkpoint resumeFrom;
 
     // Data structures for the algorithm
     int[] shortestPath; 
     int [][] antRoutes; 
-    int [][] antRouteGraph; 
-    double [][] antPheromones;
-    double [][] deltaPheromones;
-    double [][] cityLeftToTraverse;
+    double [] antLengths;
+    long [][] visitedCities; 
+    CsrGraph.Builder graphBuilder;
+    CityGraph antRouteGraph;
+    DoubleMatrix antPheromones;
+    DoubleMatrix deltaPheromones;
+    AntWorker [] workers;
     double [][] cities; 
+    DoubleMatrix distances;
+    DoubleMatrix heuristics;
+    DoubleMatrix choiceInfo;
+    int [][] candidateLists;
+    int [][] localSearchNeighbours;
+    // Fenwick tree over the choice info of every graph row, at the row's slots, on the heap or off it,
+    // and the total of each row
+    double [] rowTree;
+    OffHeapBuffer offHeapRowTree;
+    double [] rowTotals;
 
     // Constructor to initialize the ACO parameters
     public ACO(int numberOfAnts, int numberOfCities, double pheromone_weight, double distance_weight, double pheromone_constant, double evaporation_rate, double max_pheromone, int start_city) 
@@ -23,12 +181,354 @@ public class ACO {
         this.NUM_ANTS = numberOfAnts;
         this.NUM_CITIES = numberOfCities;
         this.PHEROMONE_WEIGHT = pheromone_weight;
-        this.DISTANCE_WEIGHT = pheromone_weight;
+        this.DISTANCE_WEIGHT = distance_weight;
         this.PHEROMONE_CONSTANT = pheromone_constant;
         this.EVAPORATION_RATE = evaporation_rate;
         this.MAX_PHEROMONE = max_pheromone;
         this.START_CITY = start_city;
-        this.randoms = new Randoms(21);
+        this.randoms = new SplittableRandoms(21);
+    }
+
+    /**
+     * Replaces the random generator, for example with new Randoms(21) to reproduce runs made with
+     * the original Park-Miller generator. Must be set before init().
+     */
+    public void setRandomSource(RandomSource randoms) 
+    {
+        this.randoms = randoms;
+    }
+
+    /**
+     * Limits each construction step to the given number of nearest neighbours, 0 considers every city.
+     */
+    public void setCandidateListSize(int candidateListSize) 
+    {
+        this.candidateListSize = candidateListSize;
+    }
+
+    /**
+     * Spreads the ants of each iteration over the given number of threads, 1 builds every tour on the caller.
+     * Ignored by Ant Colony System, whose ants wear down the edges the next ant chooses from.
+     */
+    public void setThreadCount(int threadCount) 
+    {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Stores the matrices as packed upper triangles, for symmetric instances only. Must be set before init().
+     */
+    public void setSymmetric(boolean symmetric) 
+    {
+        this.symmetric = symmetric;
+    }
+
+    /**
+     * Keeps pheromones, distances and choice info only for joined cities, for graphs far from complete.
+     * The graph is then stored as CSR adjacency, whose edge checks are binary searches, instead of a bitset.
+     * Must be set before init().
+     */
+    public void setSparse(boolean sparse) 
+    {
+        this.sparse = sparse;
+    }
+
+    /**
+     * Keeps the N x N matrices outside the Java heap as packed triangles, for dense instances whose matrices
+     * would not fit a reasonable heap. Rounded TSPLIB distances and the row-sampling trees go off-heap too;
+     * quantised heuristics stay on the heap. Join the cities with joinAllCities(), which stores no graph,
+     * to keep the heap independent of N^2. Ignored in sparse mode. Must be set before init().
+     */
+    public void setOffHeap(boolean offHeap) 
+    {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Backs the off-heap matrices with scratch files in the given directory instead of direct memory,
+     * null for direct memory. Must be set before init().
+     */
+    public void setOffHeapDirectory(String offHeapDirectory) 
+    {
+        this.offHeapDirectory = offHeapDirectory;
+    }
+
+    /**
+     * Stores the matrices the construction loop reads in reduced precision, DOUBLE by default.
+     * Float storage applies to the on-heap dense and packed layouts, quantised heuristics to every layout.
+     * Must be set before init().
+     */
+    public void setPrecision(Precision precision) 
+    {
+        this.precision = precision;
+    }
+
+    /**
+     * Evaporates through a global scale factor instead of touching every edge, so an iteration only costs
+     * as much as the edges the ants deposit on. Results match the eager update up to floating-point rounding.
+     */
+    public void setLazyEvaporation(boolean lazyEvaporation) 
+    {
+        this.lazyEvaporation = lazyEvaporation;
+    }
+
+    /**
+     * Improves every constructed tour with 2-opt and Or-opt before it is measured and deposits pheromone.
+     */
+    public void setLocalSearch(boolean localSearch) 
+    {
+        this.localSearch = localSearch;
+    }
+
+    /**
+     * Selects the pheromone update rule, Ant System by default. Lazy evaporation only applies to Ant System.
+     * Ant Colony System updates pheromones while tours are built, so it always builds them on one thread.
+     */
+    public void setVariant(Variant variant) 
+    {
+        this.variant = variant;
+    }
+
+    /**
+     * Stops optimize() once it has run for the given wall-clock time, 0 for no limit.
+     */
+    public void setTimeBudget(long timeBudgetMillis) 
+    {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * Stops optimize() as soon as a tour no longer than the given length is found, 0 for no target.
+     */
+    public void setTargetLength(double targetLength) 
+    {
+        this.targetLength = targetLength;
+    }
+
+    /**
+     * Stops optimize() after the given number of iterations in a row without a shorter tour, 0 for no limit.
+     */
+    public void setMaxStagnantIterations(int maxStagnantIterations) 
+    {
+        this.maxStagnantIterations = maxStagnantIterations;
+    }
+
+    /**
+     * Stops optimize() once the given number of tours has been built and measured, 0 for no limit.
+     */
+    public void setMaxEvaluations(long maxEvaluations) 
+    {
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * Registers a listener that receives every improved tour while optimize() runs.
+     */
+    public void addTourListener(TourListener listener) 
+    {
+        tourListeners.add(listener);
+    }
+
+    public void removeTourListener(TourListener listener) 
+    {
+        tourListeners.remove(listener);
+    }
+
+    /**
+     * Asks a running optimize() to return after its current iteration. Safe to call from any thread;
+     * a call made while no run is in progress has no effect on the next one.
+     */
+    public void cancel() 
+    {
+        cancelled = true;
+    }
+
+    /**
+     * The criterion that ended the last call to optimize(), null before the first one.
+     */
+    public StopReason getStopReason() 
+    {
+        return stopReason;
+    }
+
+    /**
+     * Number of iterations the last call to optimize() ran.
+     */
+    public int getIterationsRun() 
+    {
+        return iterationsRun;
+    }
+
+    /**
+     * Scores whole choice-info rows with the Vector API when an ant falls back from its candidate list.
+     * Needs the dense row-major double layout: not symmetric, sparse or off-heap, DOUBLE precision.
+     * optimize() fails on any other layout. Without vector/VectorRowScorer compiled or without the
+     * jdk.incubator.vector module a scalar loop is used instead, with a warning.
+     */
+    public void setVectorScoring(boolean vectorScoring) 
+    {
+        this.vectorScoring = vectorScoring;
+    }
+
+    /**
+     * Samples the next city in O(log n) from a Fenwick tree over each choice-info row, kept up to date as pheromones
+     * change, instead of scanning the row on every step. Not used by Ant Colony System, whose ants change the rows as they go.
+     */
+    public void setRowSampling(boolean rowSampling) 
+    {
+        this.rowSampling = rowSampling;
+    }
+
+    /**
+     * Selects how distances are computed, plain Euclidean by default. Must be set before optimize().
+     */
+    public void setDistanceMetric(DistanceMetric distanceMetric) 
+    {
+        this.distanceMetric = distanceMetric;
+    }
+
+    /**
+     * Uses the given distances instead of computing them from the city positions, as the EXPLICIT metric requires.
+     * The matrix is only read, so it may be a read-only view such as a MappedMatrix.
+     */
+    public void setDistances(DoubleMatrix distances) 
+    {
+        this.precomputedDistances = distances;
+    }
+
+    /**
+     * Uses the given heuristic terms (1 / d)^beta, computed with the given distance weight beta, instead of
+     * computing them from the distances. They are used as they are when the matrices have the packed symmetric
+     * double layout and copied otherwise. Terms computed with another distance weight are ignored with a warning.
+     */
+    public void setHeuristics(DoubleMatrix heuristics, double distanceWeight) 
+    {
+        this.precomputedHeuristics = heuristics;
+        this.precomputedHeuristicWeight = distanceWeight;
+    }
+
+    /**
+     * Uses the given nearest-neighbour lists, closest first, instead of building them with a k-d tree.
+     * Lists longer than the candidate list size are cut short, shorter ones are ignored.
+     */
+    public void setCandidateLists(int[][] candidateLists) 
+    {
+        this.precomputedCandidates = candidateLists;
+    }
+
+    /**
+     * Saves the colony state to the given file every checkpointPeriod iterations and when optimize() returns,
+     * so resume() can continue the run. Files are written on a background thread while the colony goes on;
+     * a checkpoint that falls due while the previous one is still being written is skipped.
+     * A period of 0 turns checkpoints off.
+     */
+    public void setCheckpoint(String checkpointFile, int checkpointPeriod) 
+    {
+        this.checkpointFile = checkpointFile;
+        this.checkpointPeriod = checkpointPeriod;
+    }
+
+    /**
+     * Recomputes every tour length from scratch and compares it with the length tracked during construction,
+     * throwing IllegalStateException on a mismatch. For debugging only, it doubles the length work.
+     */
+    public void setVerifyLengths(boolean verifyLengths) 
+    {
+        this.verifyLengths = verifyLengths;
+    }
+
+    /**
+     * Picks the row scorer for the configured layout, null if rows are scored through the graph instead.
+     */
+    private RowScorer newRowScorer() 
+    {
+        if (!vectorScoring) 
+        {
+            return null;
+        }
+        if (!(choiceInfo instanceof DenseMatrix)) 
+        {
+            throw new IllegalStateException("Vector scoring needs the dense row-major layout, but the choice info is a " 
+                    + choiceInfo.getClass().getSimpleName() + ": turn off symmetric, sparse and off-heap storage and use DOUBLE precision");
+        }
+        try 
+        {
+            // loaded reflectively so that this class compiles and runs without the incubator module
+            return (RowScorer) Class.forName("VectorRowScorer").getDeclaredConstructor().newInstance();
+        } 
+        catch (ReflectiveOperationException | LinkageError e) 
+        {
+            System.err.println("Vector scoring is not available (" + e + "), scoring rows with the scalar loop");
+            return new ScalarRowScorer();
+        }
+    }
+
+    /**
+     * Allocates an N x N matrix in the configured layout, or an edge-indexed one over the built graph when sparse.
+     * Off-heap matrices always use the packed symmetric layout.
+     */
+    private DoubleMatrix newMatrix() 
+    {
+        if (sparse) 
+        {
+            return new SparseMatrix((CsrGraph) antRouteGraph);
+        }
+        if (offHeap) 
+        {
+            if (offHeapDirectory == null) 
+            {
+                return new OffHeapMatrix(NUM_CITIES);
+            }
+            try 
+            {
+                return new OffHeapMatrix(NUM_CITIES, Paths.get(offHeapDirectory));
+            } 
+            catch (IOException e) 
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return symmetric ? new SymmetricMatrix(NUM_CITIES) : new DenseMatrix(NUM_CITIES);
+    }
+
+    /**
+     * Allocates off-heap storage of length elements of elementBytes bytes, in the scratch directory if one is set.
+     */
+    private OffHeapBuffer newOffHeapBuffer(long length, int elementBytes) 
+    {
+        if (offHeapDirectory == null) 
+        {
+            return new OffHeapBuffer(length, elementBytes);
+        }
+        try 
+        {
+            return new OffHeapBuffer(length, elementBytes, Paths.get(offHeapDirectory));
+        } 
+        catch (IOException e) 
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether the heuristics would be stored as a packed upper triangle of doubles, the layout of a MappedMatrix,
+     * so that given heuristics can be used without a copy.
+     */
+    private boolean packedDoubleLayout() 
+    {
+        return !sparse && precision != Precision.FLOAT_QUANTISED_HEURISTICS && (offHeap || (symmetric && precision == Precision.DOUBLE));
+    }
+
+    /**
+     * Like newMatrix(), but in float when reduced precision is selected and the layout allows it.
+     */
+    private DoubleMatrix newReducedMatrix() 
+    {
+        if (precision == Precision.DOUBLE || sparse || offHeap) 
+        {
+            return newMatrix();
+        }
+        return new FloatMatrix(NUM_CITIES, symmetric);
     }
 
     /**
@@ -36,39 +536,36 @@ public class ACO {
      */
     public void init() 
     {
-        this.antRouteGraph = new int[NUM_CITIES][];
+        // dense graphs are kept as a bitset for O(1) edge checks, only sparse ones go through the CSR builder
+        this.graphBuilder = sparse ? new CsrGraph.Builder(NUM_CITIES) : null;
+        this.antRouteGraph = sparse ? null : new DenseGraph(NUM_CITIES);
+        this.distances = null;
+        this.localSearchNeighbours = null;
         this.cities = new double[NUM_CITIES][];
-        this.antPheromones = new double[NUM_CITIES][];
-        this.deltaPheromones = new double[NUM_CITIES][];
-        this.cityLeftToTraverse = new double[NUM_CITIES][];
+        if (!sparse) 
+        {
+            this.antPheromones = newReducedMatrix();
+            this.deltaPheromones = newMatrix();
+        }
         
         for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) 
         {
-            this.antRouteGraph[firstCity] = new int[NUM_CITIES];
             this.cities[firstCity] = new double[2];
-            this.antPheromones[firstCity] = new double[NUM_CITIES];
-            this.deltaPheromones[firstCity] = new double[NUM_CITIES];
-            this.cityLeftToTraverse[firstCity] = new double[2];
             
             for (int secondCity = 0; secondCity < 2; secondCity++) 
             {
                 cities[firstCity][secondCity] = -1.0;
-                cityLeftToTraverse[firstCity][secondCity] = -1.0;
-            }
-            
-            for (int secondCity = 0; secondCity < NUM_CITIES; secondCity++) 
-            {
-                antRouteGraph[firstCity][secondCity] = 0;
-                antPheromones[firstCity][secondCity] = 0.0;
-                deltaPheromones[firstCity][secondCity] = 0.0;
             }
         }
 
-        antRoutes = new int[NUM_CITIES][];
+        antRoutes = new int[NUM_ANTS][];
+        antLengths = new double[NUM_ANTS];
+        visitedCities = new long[NUM_ANTS][];
         
         for (int firstCity = 0; firstCity < NUM_ANTS; firstCity++) 
         {
             antRoutes[firstCity] = new int[NUM_CITIES];
+            visitedCities[firstCity] = new long[(NUM_CITIES + 63) >>> 6];
             
             for (int secondCity = 0; secondCity < NUM_CITIES; secondCity++) 
             {
@@ -76,6 +573,10 @@ public class ACO {
             }
         }
 
+        pheromoneScale = 1.0;
+        pheromoneMax = 0.0;
+        pheromoneMin = 0.0;
+        pheromoneInitial = 0.0;
         shortestLength = (double) Integer.MAX_VALUE;
         shortestPath = new int[NUM_CITIES];
         
@@ -86,280 +587,1614 @@ public class ACO {
     }
 
     /**
-     * Joins two cities and initializes the pheromones between them.
+     * Joins two cities and initializes the pheromones between them.
+     * In sparse mode the pheromones are initialized once the graph is built, at the start of optimize().
+     */
+    public void joinCity(int firstCity, int secondCity) {
+        if (sparse) 
+        {
+            this.graphBuilder.addEdge(firstCity, secondCity);
+        }
+        else 
+        {
+            ((DenseGraph) this.antRouteGraph).join(firstCity, secondCity);
+            this.antPheromones.setEdge(firstCity, secondCity, randoms.generateUniform() * MAX_PHEROMONE);
+        }
+    }
+
+    /**
+     * Joins every pair of cities, the same as calling joinCity() for every ordered pair of distinct cities
+     * row by row, pheromones included, but a dense graph is marked complete instead of joining the pairs one at a time.
+     */
+    public void joinAllCities() 
+    {
+        if (sparse) 
+        {
+            for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) 
+            {
+                for (int secondCity = firstCity + 1; secondCity < NUM_CITIES; secondCity++) 
+                {
+                    graphBuilder.addEdge(firstCity, secondCity);
+                }
+            }
+            return;
+        }
+        ((DenseGraph) antRouteGraph).joinAll();
+        for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) 
+        {
+            for (int secondCity = 0; secondCity < NUM_CITIES; secondCity++) 
+            {
+                if (secondCity == firstCity) 
+                {
+                    continue;
+                }
+                // every ordered pair draws, and the later draw of a pair, from the larger city's row, is the one kept
+                double pheromone = randoms.generateUniform() * MAX_PHEROMONE;
+                if (secondCity < firstCity) 
+                {
+                    antPheromones.setEdge(firstCity, secondCity, pheromone);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the position of a city in the 2D space.
+     */
+    public void setCityPosition(int city, double x_coord, double y_coord) {
+        this.cities[city][0] = x_coord;
+        this.cities[city][1] = y_coord;
+    }
+
+    /**
+     * Prints the best route and its length.
+     */
+    public void result() 
+    {
+        System.out.println(" BEST ROUTE:");
+        
+        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+        {
+            if (shortestPath[cityIteration] == 0) 
+            {
+                System.out.println("source ");
+                continue;
+            }
+            if (shortestPath[cityIteration] >=1 && shortestPath[cityIteration] <= 26) 
+            {
+                System.out.print((char) (shortestPath[cityIteration] - 1 +'A'));
+            } 
+            else 
+            {
+                System.out.print((shortestPath[cityIteration] - 27));
+            }
+        }
+        System.out.println("\n" + "length: " + shortestLength);
+    }
+
+    /**
+     * Continues the run saved in the checkpoint file for at most ITERATIONS iterations counted from the start
+     * of that run, finding the same tours as if it had never stopped. The colony has to be set up exactly
+     * as for the saved run, with the same cities, settings, thread count and kind of random source.
+     */
+    public void resume(String checkpointFile, int ITERATIONS) throws IOException 
+    {
+        Checkpoint saved = Checkpoint.read(Paths.get(checkpointFile));
+        if (saved.numberOfCities != NUM_CITIES || saved.numberOfAnts != NUM_ANTS || saved.variant != variant.ordinal()) 
+        {
+            throw new IllegalArgumentException(checkpointFile + " was saved by a colony of " + saved.numberOfAnts + " ants on "
+                    + saved.numberOfCities + " cities running " + Variant.values()[saved.variant]);
+        }
+        this.resumeFrom = saved;
+        optimize(ITERATIONS);
+    }
+
+    /**
+     * Optimizes the routes for at most the given number of iterations, or until one of the configured
+     * stopping criteria is met. getStopReason() tells which one ended the run.
+     */
+    public void optimize(int ITERATIONS) 
+    {
+        // a cancel() that came after the previous run stopped looking belongs to that run
+        cancelled = false;
+        if (distances == null) 
+        {
+            buildGraph();
+            computeDistances();
+            computeCandidateLists();
+        }
+        if (localSearch && localSearchNeighbours == null) 
+        {
+            computeLocalSearchNeighbours();
+        }
+        Checkpoint saved = resumeFrom;
+        resumeFrom = null;
+        if (saved != null) 
+        {
+            restoreColony(saved);
+        }
+        boolean sampled = rowSampling && variant != Variant.ANT_COLONY_SYSTEM;
+        boolean offHeapTree = sampled && offHeap && !sparse;
+        rowTree = sampled && !offHeapTree ? new double[heapRowSlots()] : null;
+        offHeapRowTree = offHeapTree ? newOffHeapBuffer(rowSlots(), 8) : null;
+        rowTotals = sampled ? new double[NUM_CITIES] : null;
+        updateChoiceInfo();
+        rowScorer = newRowScorer();
+
+        // ACS ants update the shared pheromones and choice info in turn, in parallel they would race
+        int workerCount = variant == Variant.ANT_COLONY_SYSTEM ? 1 : Math.min(threadCount, NUM_ANTS);
+        workers = new AntWorker[workerCount];
+        for (int workerIndex = 0; workerIndex < workerCount; workerIndex++) 
+        {
+            workers[workerIndex] = new AntWorker(NUM_CITIES, workerIndex == 0 ? randoms : randoms.split(),
+                    localSearch ? new LocalSearch(distances, antRouteGraph, localSearchNeighbours) : null);
+        }
+        if (saved != null) 
+        {
+            restoreRandomStreams(saved);
+        }
+        ExecutorService executor = workerCount > 1 ? Executors.newFixedThreadPool(workerCount) : null;
+
+        long startTime = System.currentTimeMillis();
+        long evaluations = saved != null ? saved.evaluations : 0;
+        int lastImprovement = saved != null ? saved.lastImprovement : 0;
+        stopReason = StopReason.ITERATIONS;
+        iterationsRun = saved != null ? saved.iteration : 0;
+        try 
+        {
+            for (int index = iterationsRun + 1; index <= ITERATIONS; index++) 
+            {
+                constructTours(index, executor);
+
+                int previousImprovement = lastImprovement;
+                int iterationBest = 0;
+                double iterationBestLength = Double.MAX_VALUE;
+                for (int antIteration = 0; antIteration < NUM_ANTS; antIteration++) 
+                {
+                    double pathLength = antLengths[antIteration];
+
+                    if (pathLength < iterationBestLength) 
+                    {
+                        iterationBest = antIteration;
+                        iterationBestLength = pathLength;
+                    }
+                    if (pathLength < shortestLength) 
+                    {
+                        lastImprovement = index;
+                        shortestLength = pathLength;
+                        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+                        {
+                            shortestPath[cityIteration] = antRoutes[antIteration][cityIteration];
+                        }
+                    }
+                }
+
+                if (variant == Variant.MAX_MIN) 
+                {
+                    if (index % MAX_MIN_BEST_SO_FAR_PERIOD == 0) 
+                    {
+                        updatePheromonesMaxMin(shortestPath, shortestLength, index);
+                    }
+                    else 
+                    {
+                        updatePheromonesMaxMin(antRoutes[iterationBest], iterationBestLength, index);
+                    }
+                    updateChoiceInfo();
+                }
+                else if (variant == Variant.ANT_COLONY_SYSTEM) 
+                {
+                    updatePheromonesAntColonySystem();
+                }
+                else if (lazyEvaporation) 
+                {
+                    updatePheromonesLazily();
+                }
+                else 
+                {
+                    updatePHEROMONES();
+                    updateChoiceInfo();
+                }
+
+                if (lastImprovement != previousImprovement && !tourListeners.isEmpty()) 
+                {
+                    for (TourListener listener : tourListeners) 
+                    {
+                        listener.onImprovement(index, shortestLength, shortestPath.clone());
+                    }
+                }
+
+                iterationsRun = index;
+                evaluations += NUM_ANTS;
+                if (checkpointPeriod > 0 && index % checkpointPeriod == 0) 
+                {
+                    saveCheckpoint(index, evaluations, lastImprovement, false);
+                }
+                if (cancelled) 
+                {
+                    stopReason = StopReason.CANCELLED;
+                    break;
+                }
+                if (targetLength > 0 && shortestLength <= targetLength) 
+                {
+                    stopReason = StopReason.TARGET_LENGTH;
+                    break;
+                }
+                if (timeBudgetMillis > 0 && System.currentTimeMillis() - startTime >= timeBudgetMillis) 
+                {
+                    stopReason = StopReason.TIME_BUDGET;
+                    break;
+                }
+                if (maxStagnantIterations > 0 && index - lastImprovement >= maxStagnantIterations) 
+                {
+                    stopReason = StopReason.STAGNATION;
+                    break;
+                }
+                if (maxEvaluations > 0 && evaluations >= maxEvaluations) 
+                {
+                    stopReason = StopReason.EVALUATIONS;
+                    break;
+                }
+            }
+            if (checkpointPeriod > 0) 
+            {
+                saveCheckpoint(iterationsRun, evaluations, lastImprovement, true);
+            }
+        } 
+        finally 
+        {
+            if (executor != null) 
+            {
+                executor.shutdown();
+            }
+            if (checkpointWriter != null) 
+            {
+                checkpointWriter.shutdown();
+                checkpointWriter = null;
+            }
+        }
+    }
+
+    /**
+     * Snapshots the colony state and hands it to the writer thread. Unless told to wait, the snapshot is skipped
+     * while the previous one is still being written, so the iterations never stall on the disk.
+     */
+    private void saveCheckpoint(int iteration, long evaluations, int lastImprovement, boolean wait) 
+    {
+        if (checkpointWrite != null) 
+        {
+            if (!wait && !checkpointWrite.isDone()) 
+            {
+                return;
+            }
+            finishCheckpointWrite();
+            if (checkpoint.iteration == iteration) 
+            {
+                return;
+            }
+        }
+
+        // the snapshot is kept off the heap in the matrix's own precision and reused from one checkpoint to the next
+        int pheromoneBytes = antPheromones instanceof FloatMatrix ? 4 : 8;
+        if (checkpoint == null || checkpoint.pheromones.length() != antPheromones.length() 
+                || checkpoint.pheromoneBytes != pheromoneBytes || checkpoint.randomStates.length != workers.length) 
+        {
+            checkpoint = new Checkpoint();
+            checkpoint.pheromoneBytes = pheromoneBytes;
+            checkpoint.pheromones = newOffHeapBuffer(antPheromones.length(), pheromoneBytes);
+            checkpoint.shortestPath = new int[NUM_CITIES];
+            checkpoint.randomStates = new long[workers.length][];
+        }
+        Checkpoint snapshot = checkpoint;
+        snapshot.numberOfCities = NUM_CITIES;
+        snapshot.numberOfAnts = NUM_ANTS;
+        snapshot.variant = variant.ordinal();
+        snapshot.iteration = iteration;
+        snapshot.evaluations = evaluations;
+        snapshot.lastImprovement = lastImprovement;
+        snapshot.shortestLength = shortestLength;
+        snapshot.pheromoneScale = pheromoneScale;
+        snapshot.pheromoneMax = pheromoneMax;
+        snapshot.pheromoneMin = pheromoneMin;
+        snapshot.pheromoneInitial = pheromoneInitial;
+        System.arraycopy(shortestPath, 0, snapshot.shortestPath, 0, NUM_CITIES);
+        for (int workerIndex = 0; workerIndex < workers.length; workerIndex++) 
+        {
+            snapshot.randomStates[workerIndex] = workers[workerIndex].randoms.getState();
+        }
+        sweep(antPheromones.length(), (from, to) -> {
+            for (int index = from; index < to; index++) 
+            {
+                snapshot.setPheromone(index, antPheromones.getAt(index));
+            }
+        });
+
+        if (checkpointWriter == null) 
+        {
+            checkpointWriter = Executors.newSingleThreadExecutor();
+        }
+        Path path = Paths.get(checkpointFile);
+        checkpointWrite = checkpointWriter.submit(() -> {
+            snapshot.write(path);
+            return null;
+        });
+        if (wait) 
+        {
+            finishCheckpointWrite();
+        }
+    }
+
+    /**
+     * Waits for the pending checkpoint write and rethrows its failure.
+     */
+    private void finishCheckpointWrite() 
+    {
+        try 
+        {
+            checkpointWrite.get();
+        } 
+        catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing a checkpoint", e);
+        } 
+        catch (ExecutionException e) 
+        {
+            throw new IllegalStateException("Writing the checkpoint failed", e.getCause());
+        } 
+        finally 
+        {
+            checkpointWrite = null;
+        }
+    }
+
+    /**
+     * Puts back the pheromones, the best tour and the variant's bounds saved in a checkpoint.
+     */
+    private void restoreColony(Checkpoint saved) 
+    {
+        if (saved.pheromones.length() != antPheromones.length()) 
+        {
+            throw new IllegalArgumentException("The checkpoint holds " + saved.pheromones.length() 
+                    + " pheromone slots but the colony has " + antPheromones.length() + ", check the matrix settings");
+        }
+        for (int index = 0; index < antPheromones.length(); index++) 
+        {
+            antPheromones.setAt(index, saved.pheromone(index));
+        }
+        shortestLength = saved.shortestLength;
+        System.arraycopy(saved.shortestPath, 0, shortestPath, 0, NUM_CITIES);
+        pheromoneScale = saved.pheromoneScale;
+        pheromoneMax = saved.pheromoneMax;
+        pheromoneMin = saved.pheromoneMin;
+        pheromoneInitial = saved.pheromoneInitial;
+    }
+
+    /**
+     * Puts every worker's random stream back where it was when the checkpoint was taken.
+     */
+    private void restoreRandomStreams(Checkpoint saved) 
+    {
+        if (saved.randomStates.length != workers.length) 
+        {
+            throw new IllegalArgumentException("The checkpoint was saved with " + saved.randomStates.length 
+                    + " construction threads, not " + workers.length);
+        }
+        for (int workerIndex = 0; workerIndex < workers.length; workerIndex++) 
+        {
+            workers[workerIndex].randoms.setState(saved.randomStates[workerIndex]);
+        }
+    }
+
+    /**
+     * Builds a valid tour for every ant, spreading the ants over the workers when a thread pool is given.
+     */
+    private void constructTours(int iteration, ExecutorService executor) 
+    {
+        if (executor == null) 
+        {
+            for (int antIteration = 0; antIteration < NUM_ANTS; antIteration++) 
+            {
+                constructTour(antIteration, iteration, workers[0]);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(workers.length);
+        for (int workerIndex = 0; workerIndex < workers.length; workerIndex++) 
+        {
+            final int firstAnt = workerIndex;
+            final AntWorker worker = workers[workerIndex];
+            tasks.add(() -> {
+                for (int antIteration = firstAnt; antIteration < NUM_ANTS; antIteration += workers.length) 
+                {
+                    constructTour(antIteration, iteration, worker);
+                }
+                return null;
+            });
+        }
+
+        // invokeAll returns once every worker is done, which is the barrier before the pheromone update
+        try 
+        {
+            for (Future<Void> future : executor.invokeAll(tasks)) 
+            {
+                future.get();
+            }
+        } 
+        catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building tours", e);
+        } 
+        catch (ExecutionException e) 
+        {
+            if (e.getCause() instanceof RuntimeException) 
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Tour construction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Builds the tour of one ant, validated only when assertions are enabled.
+     * Throws IllegalStateException once MAX_ROUTE_RESTARTS fresh starts have all failed.
+     */
+    private void constructTour(int antIndex, int iteration, AntWorker worker) 
+    {
+        // route() only gives up once its rotation budget is spent, which needs a very sparse graph
+        int restarts = 0;
+        while (!route(antIndex, worker)) 
+        {
+            if (++restarts > MAX_ROUTE_RESTARTS) 
+            {
+                throw new IllegalStateException("No tour through all " + NUM_CITIES + " cities found in " 
+                        + restarts + " attempts, the instance looks infeasible: its graph may have no Hamiltonian cycle");
+            }
+            Arrays.fill(antRoutes[antIndex], -1);
+        }
+        antLengths[antIndex] = worker.routeLength;
+        if (worker.localSearch != null) 
+        {
+            antLengths[antIndex] -= worker.localSearch.improve(antRoutes[antIndex], START_CITY);
+        }
+        if (variant == Variant.ANT_COLONY_SYSTEM && pheromoneInitial > 0.0) 
+        {
+            wearRoute(antRoutes[antIndex]);
+        }
+        assert isRouteValid(antIndex, iteration) == 0 : "ant " + antIndex + " built an invalid tour";
+        if (verifyLengths) 
+        {
+            double exactLength = length(antIndex);
+            if (Math.abs(exactLength - antLengths[antIndex]) > 1e-9 * exactLength) 
+            {
+                throw new IllegalStateException("ant " + antIndex + " tracked length " + antLengths[antIndex] 
+                        + " but its tour measures " + exactLength);
+            }
+        }
+    }
+
+    /**
+     * In sparse mode freezes the joined cities into the CSR adjacency and allocates the pheromones per edge.
+     * The dense graph is complete as soon as the cities are joined.
+     */
+    private void buildGraph() 
+    {
+        if (!sparse) 
+        {
+            checkDegrees();
+            return;
+        }
+        this.antRouteGraph = graphBuilder.build();
+        this.graphBuilder = null;
+        checkDegrees();
+
+        this.antPheromones = newReducedMatrix();
+        this.deltaPheromones = newMatrix();
+        for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) 
+        {
+            for (int position = 0; position < antRouteGraph.rowLength(firstCity); position++) 
+            {
+                int secondCity = antRouteGraph.neighbour(firstCity, position);
+                if (secondCity > firstCity) 
+                {
+                    antPheromones.setEdge(firstCity, secondCity, randoms.generateUniform() * MAX_PHEROMONE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fails fast on a graph that cannot hold a tour because some city has fewer than two neighbours,
+     * instead of letting every ant rotate and restart until it gives up.
+     */
+    private void checkDegrees() 
+    {
+        if (NUM_CITIES < 3) 
+        {
+            return;
+        }
+        for (int city = 0; city < NUM_CITIES; city++) 
+        {
+            int degree = antRouteGraph.degree(city);
+            if (degree < 2) 
+            {
+                throw new IllegalStateException("City " + city + " is joined to " + degree 
+                        + " other cities but a tour needs 2, the instance is infeasible");
+            }
+        }
+    }
+
+    /**
+     * Calculates the distance between two cities with the configured metric, or looks it up when distances were given.
+     */
+    private double calcDistance(int firstCity, int secondCity) 
+    {
+        if (precomputedDistances != null) 
+        {
+            return precomputedDistances.get(firstCity, secondCity);
+        }
+        return distance(distanceMetric, cities[firstCity], cities[secondCity]);
+    }
+
+    /**
+     * Distance between two positions {x, y} under the given metric, also used by InstanceConverter.
+     */
+    static double distance(DistanceMetric distanceMetric, double[] firstCity, double[] secondCity) 
+    {
+        double euclidean = Math.sqrt(Math.pow(firstCity[0] - secondCity[0], 2)
+                + Math.pow(firstCity[1] - secondCity[1], 2));
+        switch (distanceMetric) 
+        {
+            case EUC_2D:
+                return (int) (euclidean + 0.5);
+            case CEIL_2D:
+                return Math.ceil(euclidean);
+            case ATT:
+                double pseudo = euclidean / Math.sqrt(10.0);
+                int rounded = (int) (pseudo + 0.5);
+                return rounded < pseudo ? rounded + 1 : rounded;
+            case GEO:
+                return geoDistance(firstCity, secondCity);
+            case EXPLICIT:
+                throw new IllegalStateException("EXPLICIT distances have to be given with setDistances()");
+            default:
+                return euclidean;
+        }
+    }
+
+    /**
+     * TSPLIB GEO distance, with the truncations and constants of the TSPLIB definition so lengths match published tours.
+     */
+    private static double geoDistance(double[] firstCity, double[] secondCity) 
+    {
+        double firstLatitude = geoRadians(firstCity[0]);
+        double firstLongitude = geoRadians(firstCity[1]);
+        double secondLatitude = geoRadians(secondCity[0]);
+        double secondLongitude = geoRadians(secondCity[1]);
+        double q1 = Math.cos(firstLongitude - secondLongitude);
+        double q2 = Math.cos(firstLatitude - secondLatitude);
+        double q3 = Math.cos(firstLatitude + secondLatitude);
+        return (int) (6378.388 * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+    }
+
+    /**
+     * Converts a DDD.MM coordinate to radians.
+     */
+    private static double geoRadians(double coordinate) 
+    {
+        int degrees = (int) coordinate;
+        double minutes = coordinate - degrees;
+        return 3.141592 * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+
+    /**
+     * Caches the distance between every pair of joined cities together with the heuristic term eta^beta.
+     * Called once all city positions are known, so route() never has to call sqrt or pow for distances.
+     * Given distances and heuristics in the packed layout are used as they are and nothing is computed.
+     */
+    private void computeDistances() 
+    {
+        DoubleMatrix givenHeuristics = precomputedHeuristics;
+        if (givenHeuristics != null && precomputedHeuristicWeight != DISTANCE_WEIGHT) 
+        {
+            System.err.println("The given heuristics were computed for distance weight " + precomputedHeuristicWeight
+                    + ", not " + DISTANCE_WEIGHT + ", computing them again");
+            givenHeuristics = null;
+        }
+        this.choiceInfo = newReducedMatrix();
+        if (givenHeuristics != null && packedDoubleLayout()) 
+        {
+            this.heuristics = givenHeuristics;
+        }
+        else 
+        {
+            this.heuristics = precision == Precision.FLOAT_QUANTISED_HEURISTICS ? new QuantisedMatrix(choiceInfo) : newReducedMatrix();
+        }
+        if (precomputedDistances != null) 
+        {
+            this.distances = precomputedDistances;
+        }
+        else 
+        {
+            if (distanceMetric == DistanceMetric.EUCLIDEAN) 
+            {
+                this.distances = newReducedMatrix();
+            }
+            else 
+            {
+                this.distances = offHeap && !sparse ? new IntMatrix(heuristics, newOffHeapBuffer(heuristics.length(), 4)) : new IntMatrix(heuristics);
+            }
+        }
+        if (distances == precomputedDistances && heuristics == givenHeuristics) 
+        {
+            return;
+        }
+
+        for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) 
+        {
+            for (int position = 0; position < antRouteGraph.rowLength(firstCity); position++) 
+            {
+                int secondCity = antRouteGraph.neighbour(firstCity, position);
+                if (secondCity < firstCity) 
+                {
+                    continue;
+                }
+                double distance = calcDistance(firstCity, secondCity);
+                if (distances != precomputedDistances) 
+                {
+                    distances.setEdge(firstCity, secondCity, distance);
+                }
+                if (givenHeuristics != null) 
+                {
+                    heuristics.setEdge(firstCity, secondCity, givenHeuristics.get(firstCity, secondCity));
+                }
+                else 
+                {
+                    // cities rounded onto each other would get an infinite heuristic, treat them as half a unit apart
+                    heuristics.setEdge(firstCity, secondCity, Math.pow(1 / (distance > 0 ? distance : 0.5), DISTANCE_WEIGHT));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the nearest-neighbour candidate list of every city using a k-d tree over the city positions,
+     * or from the distance matrix when the metric does not follow the positions,
+     * or takes them from the precomputed lists when those are long enough.
+     */
+    private void computeCandidateLists() 
+    {
+        if (candidateListSize <= 0 || candidateListSize >= NUM_CITIES - 1) 
+        {
+            this.candidateLists = null;
+            return;
+        }
+        this.candidateLists = precomputedNeighbours(candidateListSize);
+        if (candidateLists != null) 
+        {
+            return;
+        }
+        this.candidateLists = nearestNeighbours(candidateListSize);
+    }
+
+    /**
+     * The count cities nearest to every city, closest first.
+     */
+    private int[][] nearestNeighbours(int count) 
+    {
+        int[][] neighbours = new int[NUM_CITIES][];
+        if (!ranksByPosition()) 
+        {
+            sweep(NUM_CITIES, (from, to) -> {
+                for (int city = from; city < to; city++) 
+                {
+                    int source = city;
+                    neighbours[city] = nearest(antRouteGraph, city, count, other -> distances.get(source, other));
+                }
+            });
+            return neighbours;
+        }
+        KdTree kdTree = new KdTree(cities);
+        for (int city = 0; city < NUM_CITIES; city++) 
+        {
+            neighbours[city] = kdTree.nearest(city, count);
+        }
+        return neighbours;
+    }
+
+    /**
+     * Whether nearer positions always mean shorter distances, so that a k-d tree over the positions ranks
+     * neighbours correctly. Given distances and GEO coordinates do not.
+     */
+    private boolean ranksByPosition() 
+    {
+        return precomputedDistances == null && distanceMetric != DistanceMetric.GEO && distanceMetric != DistanceMetric.EXPLICIT;
+    }
+
+    /**
+     * The k cities joined to city that are nearest by the given distance from it, closest first,
+     * or all of them when it has fewer. Also used by InstanceConverter.
+     */
+    static int[] nearest(CityGraph graph, int city, int k, IntToDoubleFunction distanceTo) 
+    {
+        k = Math.min(k, graph.degree(city));
+        int[] nearest = new int[k];
+        double[] nearestDistances = new double[k];
+        int count = 0;
+        for (int position = 0; position < graph.rowLength(city) && k > 0; position++) 
+        {
+            int other = graph.neighbour(city, position);
+            if (other < 0 || other == city) 
+            {
+                continue;
+            }
+            double distance = distanceTo.applyAsDouble(other);
+            if (count == k && distance >= nearestDistances[k - 1]) 
+            {
+                continue;
+            }
+            // insertion into the sorted prefix, dropping the farthest once it is full
+            int slot = count < k ? count++ : k - 1;
+            while (slot > 0 && nearestDistances[slot - 1] > distance) 
+            {
+                nearest[slot] = nearest[slot - 1];
+                nearestDistances[slot] = nearestDistances[slot - 1];
+                slot--;
+            }
+            nearest[slot] = other;
+            nearestDistances[slot] = distance;
+        }
+        return nearest;
+    }
+
+    /**
+     * The first count entries of every precomputed candidate list, or null if there are none or they are too short.
+     */
+    private int[][] precomputedNeighbours(int count) 
+    {
+        if (precomputedCandidates == null) 
+        {
+            return null;
+        }
+        count = Math.min(count, NUM_CITIES - 1);
+        int[][] neighbours = new int[NUM_CITIES][];
+        for (int city = 0; city < NUM_CITIES; city++) 
+        {
+            if (precomputedCandidates[city].length < count) 
+            {
+                return null;
+            }
+            neighbours[city] = precomputedCandidates[city].length == count
+                    ? precomputedCandidates[city] : Arrays.copyOf(precomputedCandidates[city], count);
+        }
+        return neighbours;
+    }
+
+    /**
+     * Gives the local search the nearest neighbours of every city, sharing the candidate lists when they exist.
+     */
+    private void computeLocalSearchNeighbours() 
+    {
+        if (candidateLists != null) 
+        {
+            this.localSearchNeighbours = candidateLists;
+            return;
+        }
+        this.localSearchNeighbours = precomputedNeighbours(LOCAL_SEARCH_NEIGHBOURS);
+        if (localSearchNeighbours != null) 
+        {
+            return;
+        }
+        this.localSearchNeighbours = nearestNeighbours(LOCAL_SEARCH_NEIGHBOURS);
+    }
+
+    /**
+     * Refreshes the choice-info matrix tau^alpha * eta^beta from the current pheromone levels,
+     * and the row trees with it when row sampling is on.
+     */
+    private void updateChoiceInfo() 
+    {
+        sweep(choiceInfo.length(), (from, to) -> {
+            for (int index = from; index < to; index++) 
+            {
+                choiceInfo.setAt(index, Math.pow(antPheromones.getAt(index), PHEROMONE_WEIGHT) * heuristics.getAt(index));
+            }
+        });
+        if (rowTotals != null) 
+        {
+            updateRowTrees();
+        }
+    }
+
+    /**
+     * Number of slots in the graph rows laid end to end, the length of the row trees.
+     */
+    private long rowSlots() 
+    {
+        return antRouteGraph.rowOffset(NUM_CITIES - 1) + antRouteGraph.rowLength(NUM_CITIES - 1);
+    }
+
+    /**
+     * rowSlots() for the on-heap row trees, which an array limits to an int.
+     */
+    private int heapRowSlots() 
+    {
+        long slots = rowSlots();
+        if (slots > Integer.MAX_VALUE - 8) 
+        {
+            throw new IllegalArgumentException("Too many cities for row sampling on the heap, use off-heap mode: " + NUM_CITIES);
+        }
+        return (int) slots;
+    }
+
+    private double treeAt(long slot) 
+    {
+        return rowTree != null ? rowTree[(int) slot] : offHeapRowTree.getDouble(slot);
+    }
+
+    private void setTree(long slot, double value) 
+    {
+        if (rowTree != null) 
+        {
+            rowTree[(int) slot] = value;
+        }
+        else 
+        {
+            offHeapRowTree.setDouble(slot, value);
+        }
+    }
+
+    /**
+     * Choice info of the edge at the given position in the row of city, 0 where the position holds no edge.
+     */
+    private double rowChoice(int city, int position) 
+    {
+        if (sparse) 
+        {
+            return choiceInfo.getAt((int) antRouteGraph.rowOffset(city) + position);
+        }
+        int secondCity = antRouteGraph.neighbour(city, position);
+        return secondCity >= 0 ? choiceInfo.get(city, secondCity) : 0.0;
+    }
+
+    /**
+     * Rebuilds the Fenwick tree of every choice-info row in linear time, used by sampleRow().
+     * Node i (1-based within the row) holds the sum of the weights at positions (i - lowbit(i), i].
+     */
+    private void updateRowTrees() 
+    {
+        sweep(NUM_CITIES, (from, to) -> {
+            for (int city = from; city < to; city++) 
+            {
+                long offset = antRouteGraph.rowOffset(city);
+                int length = antRouteGraph.rowLength(city);
+                double total = 0.0;
+                for (int position = 0; position < length; position++) 
+                {
+                    double weight = rowChoice(city, position);
+                    setTree(offset + position, weight);
+                    total += weight;
+                }
+                for (int node = 1; node <= length; node++) 
+                {
+                    int parent = node + (node & -node);
+                    if (parent <= length) 
+                    {
+                        setTree(offset + parent - 1, treeAt(offset + parent - 1) + treeAt(offset + node - 1));
+                    }
+                }
+                rowTotals[city] = total;
+            }
+        });
+    }
+
+    /**
+     * Adds delta to the weight of secondCity in the row tree of firstCity, in O(log n).
+     */
+    private void addRowWeight(int firstCity, int secondCity, double delta) 
+    {
+        long offset = antRouteGraph.rowOffset(firstCity);
+        int length = antRouteGraph.rowLength(firstCity);
+        for (int node = antRouteGraph.position(firstCity, secondCity) + 1; node <= length; node += node & -node) 
+        {
+            setTree(offset + node - 1, treeAt(offset + node - 1) + delta);
+        }
+        rowTotals[firstCity] += delta;
+    }
+
+    /**
+     * Checks if a connection exists between two cities in the antRouteGraph.
+     */
+    private boolean connectionExists(int firstCity, int secondCity) 
+    {
+        return antRouteGraph.contains(firstCity, secondCity);
+    }
+
+    /**
+     * Checks if a specific city has been visited by the ant with the given index.
+     */
+    private boolean visited(int antIndex, int city) 
+    {
+        return (visitedCities[antIndex][city >>> 6] & (1L << city)) != 0;
+    }
+
+    /**
+     * Marks a city as visited in the tabu bitset of the given ant.
+     */
+    private void markVisited(int antIndex, int city) 
+    {
+        visitedCities[antIndex][city >>> 6] |= 1L << city;
+    }
+
+    /**
+     * Clears the tabu bitset of the given ant.
+     */
+    private void clearVisited(int antIndex) 
+    {
+        Arrays.fill(visitedCities[antIndex], 0L);
+    }
+
+    /**
+     * Recomputes the total length of the route for a given ant. Construction tracks the length as it goes,
+     * so this only runs to verify it.
+     */
+    private double length(int antIndex) 
+    {
+        double sum = 0.0;
+        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+        {
+            if (cityIteration == NUM_CITIES - 1) 
+            {
+                sum += distances.get(antRoutes[antIndex][cityIteration], antRoutes[antIndex][0]);
+            } 
+            else 
+            {
+                sum += distances.get(antRoutes[antIndex][cityIteration], antRoutes[antIndex][cityIteration + 1]);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Chooses the next city for the ant by walking the unnormalised candidate weights.
+     */
+    private int city(AntWorker worker, int count, double total) 
+    {
+        double randomGen = worker.randoms.generateUniform() * total;
+        int cityIndex = 0;
+        double sum = worker.candidateWeights[cityIndex];
+        while (sum < randomGen && cityIndex < count - 1) 
+        {
+            cityIndex++;
+            sum += worker.candidateWeights[cityIndex];
+        }
+        return worker.candidateCities[cityIndex];
+    }
+
+    /**
+     * Draws a city from the whole choice-info row of firstCity by descending the row's Fenwick tree in O(log n),
+     * drawing again while the city is already visited, which keeps the roulette probabilities exact.
+     * Returns -1 after MAX_SAMPLE_REJECTIONS visited draws, so that the caller scans the remaining cities.
      */
-    public void joinCity(int firstCity, int secondCity) {
-        this.antRouteGraph[firstCity][secondCity] = 1;
-        this.antPheromones[firstCity][secondCity] = randoms.generateUniform() * MAX_PHEROMONE; 
-        this.antRouteGraph[secondCity][firstCity] = 1;
-        this.antPheromones[secondCity][firstCity] = this.antPheromones[firstCity][secondCity];
+    private int sampleRow(int antIndex, AntWorker worker, int firstCity) 
+    {
+        long offset = antRouteGraph.rowOffset(firstCity);
+        int length = antRouteGraph.rowLength(firstCity);
+        if (length == 0 || rowTotals[firstCity] <= 0.0) 
+        {
+            return -1;
+        }
+        for (int attempt = 0; attempt < MAX_SAMPLE_REJECTIONS; attempt++) 
+        {
+            double randomGen = worker.randoms.generateUniform() * rowTotals[firstCity];
+            // largest prefix of the row whose sum does not exceed the draw, the city after it is the one drawn
+            int position = 0;
+            for (int step = Integer.highestOneBit(length); step > 0; step >>>= 1) 
+            {
+                int node = position + step;
+                if (node <= length && treeAt(offset + node - 1) <= randomGen) 
+                {
+                    position = node;
+                    randomGen -= treeAt(offset + node - 1);
+                }
+            }
+            int cityIndex = antRouteGraph.neighbour(firstCity, Math.min(position, length - 1));
+            if (cityIndex >= 0 && !visited(antIndex, cityIndex)) 
+            {
+                return cityIndex;
+            }
+        }
+        return -1;
     }
 
     /**
-     * Sets the position of a city in the 2D space.
+     * Index of the largest of the first count weights, the greedy step of Ant Colony System.
      */
-    public void setCityPosition(int city, double x_coord, double y_coord) {
-        this.cities[city][0] = x_coord;
-        this.cities[city][1] = y_coord;
+    private int bestIndex(double [] weights, int count) 
+    {
+        int bestIndex = 0;
+        for (int cityIndex = 1; cityIndex < count; cityIndex++) 
+        {
+            if (weights[cityIndex] > weights[bestIndex]) 
+            {
+                bestIndex = cityIndex;
+            }
+        }
+        return bestIndex;
     }
 
     /**
-     * Prints the best route and its length.
+     * Chooses the next city from the whole choice-info row of firstCity, scored by the row scorer.
+     * Visited and unconnected cities weigh 0 and are never chosen. Returns -1 at a dead end.
      */
-    public void result() 
+    private int rowCity(int antIndex, AntWorker worker, int firstCity) 
     {
-        shortestLength += calcDistance(shortestPath[NUM_CITIES - 1], START_CITY);
-        System.out.println(" BEST ROUTE:");
-        
-        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+        double [] weights = worker.candidateWeights;
+        double total = rowScorer.score(((DenseMatrix) choiceInfo).values, firstCity * NUM_CITIES, worker.openCities, weights, NUM_CITIES);
+        if (total <= 0.0) 
         {
-            if (shortestPath[cityIteration] == 0) 
-            {
-                System.out.println("source ");
-                continue;
-            }
-            if (shortestPath[cityIteration] >=1 && shortestPath[cityIteration] <= 26) 
-            {
-                System.out.print((char) (shortestPath[cityIteration] - 1 +'A'));
-            } 
-            else 
-            {
-                System.out.print((shortestPath[cityIteration] - 27));
-            }
+            return -1;
         }
-        System.out.println("\n" + "length: " + shortestLength);
+        if (variant == Variant.ANT_COLONY_SYSTEM && worker.randoms.generateUniform() < ACS_GREEDY_PROBABILITY) 
+        {
+            return bestIndex(weights, NUM_CITIES);
+        }
+
+        return rowScorer.select(weights, NUM_CITIES, worker.randoms.generateUniform() * total);
     }
 
     /**
-     * Optimizes the routes for a given number of Iterations.
+     * This method defines the route for an ant based on the Ant Colony Optimization algorithm.
+     * Only unvisited, connected cities are offered, and a dead end (or a last city with no edge back
+     * to the start) is repaired by rotating the path instead of throwing it away, so the result is
+     * a Hamiltonian cycle.
+     * Returns false only if the rotation budget runs out.
      */
-    public void optimize(int ITERATIONS) 
+    private boolean route(int antIndex, AntWorker worker) 
     {
-        for (int index = 1; index <= ITERATIONS; index++) 
+        double [] candidateWeights = worker.candidateWeights;
+        int [] candidateCities = worker.candidateCities;
+        int [] route = antRoutes[antIndex];
+        int [] positions = worker.positions;
+        clearVisited(antIndex);
+        route[0] = START_CITY;
+        positions[START_CITY] = 0;
+        markVisited(antIndex, START_CITY);
+        worker.routeLength = 0.0;
+        if (rowScorer != null) 
         {
-            for (int antIteration = 0; antIteration < NUM_ANTS; antIteration++) 
+            Arrays.fill(worker.openCities, 1.0);
+            worker.openCities[START_CITY] = 0.0;
+        }
+        if (rowTotals != null) 
+        {
+            worker.resetUnvisited();
+            worker.removeUnvisited(START_CITY);
+        }
+
+        int rotations = 0;
+        int cityIteration = 0;
+        while (cityIteration < NUM_CITIES - 1) 
+        {
+            int firstCity = route[cityIteration];
+            int count = 0;
+            double total = 0.0;
+            if (candidateLists != null) 
             {
-                while (0 != isRouteValid(antIteration, index)) 
+                for (int cityIndex : candidateLists[firstCity]) 
                 {
-                    for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+                    if (feasible(antIndex, firstCity, cityIndex)) 
                     {
-                        antRoutes[antIteration][cityIteration] = -1;
+                        candidateWeights[count] = choiceInfo.get(firstCity, cityIndex);
+                        candidateCities[count] = cityIndex;
+                        total += candidateWeights[count];
+                        count++;
                     }
-                    route(antIteration);
                 }
-
-                double pathLength = length(antIteration);
-
-                if (pathLength < shortestLength) 
+            }
+            int nextCity = -1;
+            // every nearest neighbour is taken, fall back to every city joined to this one
+            if (0 == count && rowTotals != null) 
+            {
+                nextCity = sampleRow(antIndex, worker, firstCity);
+            }
+            if (nextCity < 0 && 0 == count && rowScorer != null) 
+            {
+                nextCity = rowCity(antIndex, worker, firstCity);
+            }
+            else if (nextCity < 0) 
+            {
+                if (0 == count && rowTotals != null && worker.unvisitedCount < antRouteGraph.degree(firstCity)) 
+                {
+                    // late in the tour the unvisited cities are fewer than the edges, unconnected ones weigh 0
+                    for (int unvisited = 0; unvisited < worker.unvisitedCount; unvisited++) 
+                    {
+                        int cityIndex = worker.unvisitedCities[unvisited];
+                        double weight = choiceInfo.get(firstCity, cityIndex);
+                        if (weight > 0.0) 
+                        {
+                            candidateWeights[count] = weight;
+                            candidateCities[count] = cityIndex;
+                            total += weight;
+                            count++;
+                        }
+                    }
+                }
+                else if (0 == count) 
+                {
+                    int offset = (int) antRouteGraph.rowOffset(firstCity);
+                    for (int position = 0; position < antRouteGraph.rowLength(firstCity); position++) 
+                    {
+                        int cityIndex = antRouteGraph.neighbour(firstCity, position);
+                        if (cityIndex >= 0 && !visited(antIndex, cityIndex)) 
+                        {
+                            candidateWeights[count] = sparse ? choiceInfo.getAt(offset + position) : choiceInfo.get(firstCity, cityIndex);
+                            candidateCities[count] = cityIndex;
+                            total += candidateWeights[count];
+                            count++;
+                        }
+                    }
+                }
+                if (0 != count) 
                 {
-                    shortestLength = pathLength;
-                    for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+                    if (variant == Variant.ANT_COLONY_SYSTEM && worker.randoms.generateUniform() < ACS_GREEDY_PROBABILITY) 
+                    {
+                        nextCity = candidateCities[bestIndex(candidateWeights, count)];
+                    }
+                    else 
                     {
-                        shortestPath[cityIteration] = antRoutes[antIteration][cityIteration];
+                        nextCity = city(worker, count, total);
                     }
                 }
             }
-
-            updatePHEROMONES();
-            for (int antIteration = 0; antIteration < NUM_ANTS; antIteration++) 
+            // dead end: rotate the path so that it ends on a city that can still be extended
+            if (nextCity < 0) 
             {
-                for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+                if (++rotations > NUM_CITIES * MAX_ROTATIONS_PER_CITY || !rotate(antIndex, worker, cityIteration, false)) 
                 {
-                    antRoutes[antIteration][cityIteration] = -1;
+                    return false;
                 }
+                continue;
+            }
+            route[cityIteration + 1] = nextCity;
+            worker.routeLength += distances.get(firstCity, nextCity);
+            positions[nextCity] = cityIteration + 1;
+            markVisited(antIndex, nextCity);
+            worker.openCities[nextCity] = 0.0;
+            if (rowTotals != null) 
+            {
+                worker.removeUnvisited(nextCity);
+            }
+            cityIteration++;
+        }
+
+        // the path covers every city, rotate it until its end connects back to the start
+        while (!connectionExists(route[NUM_CITIES - 1], START_CITY)) 
+        {
+            if (++rotations > NUM_CITIES * MAX_ROTATIONS_PER_CITY || !rotate(antIndex, worker, NUM_CITIES - 1, true)) 
+            {
+                return false;
             }
         }
+        worker.routeLength += distances.get(route[NUM_CITIES - 1], START_CITY);
+        return true;
     }
 
     /**
-     * Calculates the Euclidean distance between two cities.
+     * Checks if the ant standing on firstCity may move to cityIndex without making the tour infeasible.
      */
-    private double calcDistance(int firstCity, int secondCity) 
+    private boolean feasible(int antIndex, int firstCity, int cityIndex) 
     {
-        return Math.sqrt(Math.pow(cities[firstCity][0] - cities[secondCity][0], 2)
-                + Math.pow(cities[firstCity][1] - cities[secondCity][1], 2));
+        return connectionExists(firstCity, cityIndex) && !visited(antIndex, cityIndex);
     }
 
     /**
-     * Checks if a connection exists between two cities in the antRouteGraph.
+     * Checks if a path ending on the given city could be extended by one more city.
      */
-    private boolean connectionExists(int firstCity, int secondCity) 
+    private boolean extendable(int antIndex, int city) 
     {
-        return antRouteGraph[firstCity][secondCity] == 1;
+        for (int position = 0; position < antRouteGraph.rowLength(city); position++) 
+        {
+            int neighbour = antRouteGraph.neighbour(city, position);
+            if (neighbour >= 0 && !visited(antIndex, neighbour)) 
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Checks if a specific city has been visited by the ant with the given index.
+     * Posa rotation of the partial route[0..end]: if the end city is connected to route[position],
+     * reversing route[position + 1..end] gives a path with the same cities that ends on route[position + 1].
+     * Rotations whose new end can be extended (or, when closing, connects to the start city) are preferred,
+     * otherwise a random one is taken.
      */
-    private boolean visited(int antIndex, int city) 
+    private boolean rotate(int antIndex, AntWorker worker, int end, boolean closing) 
     {
-        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+        int [] route = antRoutes[antIndex];
+        int [] positions = worker.positions;
+        int [] pivots = worker.candidateCities;
+        int endCity = route[end];
+        int count = 0;
+        int fallbackCount = 0;
+        // preferred pivots fill the scratch array from the front, the remaining ones from the back
+        for (int rowPosition = 0; rowPosition < antRouteGraph.rowLength(endCity); rowPosition++) 
         {
-            if (antRoutes[antIndex][cityIteration] == -1) 
+            int pivotCity = antRouteGraph.neighbour(endCity, rowPosition);
+            if (pivotCity < 0 || !visited(antIndex, pivotCity) || positions[pivotCity] >= end - 1) 
             {
-                break;
+                continue;
             }
-            if (antRoutes[antIndex][cityIteration] == city) 
+            int position = positions[pivotCity];
+            int newEnd = route[position + 1];
+            if (closing ? connectionExists(newEnd, START_CITY) : extendable(antIndex, newEnd)) 
             {
-                return true;
+                pivots[count++] = position;
+            }
+            else 
+            {
+                pivots[pivots.length - ++fallbackCount] = position;
             }
         }
-        return false;
+
+        int position;
+        if (count > 0) 
+        {
+            position = pivots[(int) (worker.randoms.generateUniform() * count)];
+        }
+        else if (fallbackCount > 0) 
+        {
+            position = pivots[pivots.length - 1 - (int) (worker.randoms.generateUniform() * fallbackCount)];
+        }
+        else 
+        {
+            return false;
+        }
+
+        // distances are symmetric, so reversing the tail only swaps edge (position, position + 1) for (position, end)
+        worker.routeLength += distances.get(route[position], endCity) - distances.get(route[position], route[position + 1]);
+        for (int left = position + 1, right = end; left < right; left++, right--) 
+        {
+            int swap = route[left];
+            route[left] = route[right];
+            route[right] = swap;
+            positions[route[left]] = left;
+            positions[route[right]] = right;
+        }
+        return true;
     }
 
     /**
-     * Calculates the probability of moving from the firstCity to the secondCity for a given ant.
+     * check if the route discovered by ant is valid or not
      */
-    private double calculateProbability(int firstCity, int secondCity, int antIndex) 
+    private int isRouteValid(int antIndex, int iteration) 
     {
-        double attractive = Math.pow(1 / calcDistance(firstCity, secondCity), DISTANCE_WEIGHT);
-        double pheromoneLevel = Math.pow(antPheromones[firstCity][secondCity], PHEROMONE_WEIGHT);
-
-        double sum = 0.0;
-        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+        clearVisited(antIndex);
+        for (int cityIteration = 0; cityIteration < NUM_CITIES - 1; cityIteration++) 
         {
-            if (connectionExists(firstCity, cityIteration)) 
+            int firstCity = antRoutes[antIndex][cityIteration];
+            int secondCity = antRoutes[antIndex][cityIteration + 1];
+            if (firstCity < 0 || secondCity < 0) 
             {
-                if (!visited(antIndex, cityIteration)) 
-                {
-                    double attractiveness = Math.pow(1 / calcDistance(firstCity, cityIteration), DISTANCE_WEIGHT);
-                    double pheromone_level = Math.pow(antPheromones[firstCity][cityIteration], PHEROMONE_WEIGHT);
-                    sum += attractiveness * pheromone_level;
-                }
+                return -1;
+            }
+            if (!connectionExists(firstCity, secondCity)) 
+            {
+                return -2;
+            }
+            if (visited(antIndex, firstCity)) 
+            {
+                return -3;
             }
+            markVisited(antIndex, firstCity);
         }
-        return (attractive * pheromoneLevel) / sum;
+        if (visited(antIndex, antRoutes[antIndex][NUM_CITIES - 1])) 
+        {
+            return -3;
+        }
+        markVisited(antIndex, antRoutes[antIndex][NUM_CITIES - 1]);
+
+        if (!connectionExists(START_CITY, antRoutes[antIndex][NUM_CITIES - 1])) 
+        {
+            return -4;
+        }
+
+        return 0;
     }
 
     /**
-     * Calculates the total length of the route for a given ant.
+     * Updates the pheromone levels on the edges based on ant routes.
      */
-    private double length(int antIndex) 
+    private void updatePHEROMONES() 
     {
-        double sum = 0.0;
-        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+        for (int antInteration = 0; antInteration < NUM_ANTS; antInteration++) 
         {
-            if (cityIteration == NUM_CITIES - 1) 
-            {
-                sum += calcDistance(antRoutes[antIndex][cityIteration], antRoutes[antIndex][0]);
-            } 
-            else 
+            double pathLength = antLengths[antInteration]; // current path length for antIndex
+            for (int routeIteration = 0; routeIteration < NUM_CITIES - 1; routeIteration++) 
             {
-                sum += calcDistance(antRoutes[antIndex][cityIteration], antRoutes[antIndex][cityIteration + 1]);
+                int firstCity = antRoutes[antInteration][routeIteration];
+                int secondCity = antRoutes[antInteration][routeIteration + 1];
+                deltaPheromones.addEdge(firstCity, secondCity, PHEROMONE_CONSTANT / pathLength);
             }
         }
-        return sum;
+        sweep(antPheromones.length(), (from, to) -> {
+            for (int index = from; index < to; index++) 
+            {
+                antPheromones.setAt(index, (1 - EVAPORATION_RATE) * antPheromones.getAt(index) + deltaPheromones.getAt(index));
+                deltaPheromones.setAt(index, 0.0);
+            }
+        });
     }
 
     /**
-     * Chooses the next city for the ant based on probabilities.
+     * MAX-MIN Ant System update: only the given tour deposits, and every edge is kept within [tau_min, tau_max].
+     * tau_max = Q / (rho * best length) follows the best-so-far tour, and the pheromones start from tau_max the
+     * first time the bounds are known. Every MAX_MIN_CONVERGENCE_PERIOD iterations the colony is reset to tau_max
+     * if nearly all pheromone sits on one tour.
      */
-    private int city() 
+    private void updatePheromonesMaxMin(int[] route, double routeLength, int iteration) 
     {
-        double randomGen = randoms.generateUniform();
-        int cityIndex = 0;
-        double sum = cityLeftToTraverse[cityIndex][0];
-        while (sum < randomGen) 
+        boolean firstUpdate = pheromoneMax == 0.0;
+        pheromoneMax = PHEROMONE_CONSTANT / (EVAPORATION_RATE * shortestLength);
+        double decay = Math.pow(MAX_MIN_BEST_PROBABILITY, 1.0 / NUM_CITIES);
+        pheromoneMin = Math.min(pheromoneMax, pheromoneMax * (1 - decay) / ((NUM_CITIES / 2.0 - 1) * decay));
+        if (firstUpdate) 
         {
-            cityIndex++;
-            sum += cityLeftToTraverse[cityIndex][0];
+            antPheromones.fill(pheromoneMax);
+        }
+
+        double deposit = PHEROMONE_CONSTANT / routeLength;
+        for (int routeIteration = 0; routeIteration < NUM_CITIES; routeIteration++) 
+        {
+            deltaPheromones.addEdge(route[routeIteration], route[(routeIteration + 1) % NUM_CITIES], deposit);
+        }
+        double minimum = pheromoneMin;
+        double maximum = pheromoneMax;
+        sweep(antPheromones.length(), (from, to) -> {
+            for (int index = from; index < to; index++) 
+            {
+                double pheromone = (1 - EVAPORATION_RATE) * antPheromones.getAt(index) + deltaPheromones.getAt(index);
+                antPheromones.setAt(index, Math.max(minimum, Math.min(maximum, pheromone)));
+                deltaPheromones.setAt(index, 0.0);
+            }
+        });
+
+        if (iteration % MAX_MIN_CONVERGENCE_PERIOD == 0 && branchingFactor() < MAX_MIN_CONVERGED_BRANCHING) 
+        {
+            antPheromones.fill(pheromoneMax);
         }
-        return (int) cityLeftToTraverse[cityIndex][1];
     }
 
     /**
-     * This method defines the route for an ant based on the Ant Colony Optimization algorithm.
+     * Average lambda-branching factor: how many edges per city carry more than
+     * tau_min + lambda * (tau_max - tau_min). A converged colony is close to 2.
      */
-    private void route(int antIndex) 
+    private double branchingFactor() 
     {
-        antRoutes[antIndex][0] = START_CITY;
-        for (int cityIteration = 0; cityIteration < NUM_CITIES - 1; cityIteration++) 
+        double threshold = pheromoneMin + MAX_MIN_BRANCHING_LAMBDA * (pheromoneMax - pheromoneMin);
+        long branches = 0;
+        for (int city = 0; city < NUM_CITIES; city++) 
         {
-            int firstCity = antRoutes[antIndex][cityIteration];
-            int count = 0;
-            for (int cityIndex = 0; cityIndex < NUM_CITIES; cityIndex++) 
+            for (int position = 0; position < antRouteGraph.rowLength(city); position++) 
             {
-                if (firstCity == cityIndex) 
+                int secondCity = antRouteGraph.neighbour(city, position);
+                if (secondCity < 0) 
                 {
                     continue;
                 }
-                if (connectionExists(firstCity, cityIndex)) 
+                double pheromone = sparse ? antPheromones.getAt((int) antRouteGraph.rowOffset(city) + position) 
+                        : antPheromones.get(city, secondCity);
+                if (pheromone > threshold) 
                 {
-                    if (!visited(antIndex, cityIndex)) 
-                    {
-                        cityLeftToTraverse[count][0] = calculateProbability(firstCity, cityIndex, antIndex);
-                        cityLeftToTraverse[count][1] = (double) cityIndex;
-                        count++;
-                    }
-
+                    branches++;
                 }
             }
-            // deadlock
-            if (0 == count) 
-            {
-                return;
-            }
-            antRoutes[antIndex][cityIteration + 1] = city();
         }
+        return (double) branches / NUM_CITIES;
     }
 
     /**
-     * check if the route discovered by ant is valid or not
+     * Lazy variant of updatePHEROMONES(). The real pheromone level of an edge is pheromoneScale times the stored one,
+     * so evaporation only shrinks the scale and deposits are divided by it. The choice info is kept as
+     * stored^alpha * eta^beta, which differs from the real value by the same factor on every edge and leaves
+     * the roulette in route() unchanged, so only the edges that received a deposit need a refresh.
      */
-    private int isRouteValid(int antIndex, int iteration) 
+    private void updatePheromonesLazily() 
     {
-        for (int cityIteration = 0; cityIteration < NUM_CITIES - 1; cityIteration++) 
+        pheromoneScale *= 1 - EVAPORATION_RATE;
+        for (int antInteration = 0; antInteration < NUM_ANTS; antInteration++) 
         {
-            int firstCity = antRoutes[antIndex][cityIteration];
-            int secondCity = antRoutes[antIndex][cityIteration + 1];
-            if (firstCity < 0 || secondCity < 0) 
-            {
-                return -1;
-            }
-            if (!connectionExists(firstCity, secondCity)) 
+            double deposit = PHEROMONE_CONSTANT / antLengths[antInteration] / pheromoneScale;
+            for (int routeIteration = 0; routeIteration < NUM_CITIES - 1; routeIteration++) 
             {
-                return -2;
+                antPheromones.addEdge(antRoutes[antInteration][routeIteration], antRoutes[antInteration][routeIteration + 1], deposit);
             }
-            for (int index = 0; index < cityIteration - 1; index++) 
-            {
-                if (antRoutes[antIndex][cityIteration] == antRoutes[antIndex][index]) 
+        }
+
+        // stored values grow as 1 / pheromoneScale, fold the scale back in before they overflow
+        if (pheromoneScale < (antPheromones instanceof FloatMatrix ? MIN_FLOAT_PHEROMONE_SCALE : MIN_PHEROMONE_SCALE)) 
+        {
+            double scale = pheromoneScale;
+            sweep(antPheromones.length(), (from, to) -> {
+                for (int index = from; index < to; index++) 
                 {
-                    return -3;
+                    antPheromones.setAt(index, scale * antPheromones.getAt(index));
                 }
+            });
+            pheromoneScale = 1.0;
+            updateChoiceInfo();
+            return;
+        }
+
+        for (int antInteration = 0; antInteration < NUM_ANTS; antInteration++) 
+        {
+            for (int routeIteration = 0; routeIteration < NUM_CITIES - 1; routeIteration++) 
+            {
+                refreshChoiceInfo(antRoutes[antInteration][routeIteration], antRoutes[antInteration][routeIteration + 1]);
             }
         }
+    }
 
-        if (!connectionExists(START_CITY, antRoutes[antIndex][NUM_CITIES - 1])) 
+    /**
+     * Ant Colony System global update: only the edges of the best-so-far tour evaporate and receive
+     * rho * Q / length, so the update costs N edges instead of a sweep. tau_0 = Q / (N * length) is taken
+     * from the first best tour, and every edge starts from it.
+     */
+    private void updatePheromonesAntColonySystem() 
+    {
+        if (pheromoneInitial == 0.0) 
         {
-            return -4;
+            pheromoneInitial = PHEROMONE_CONSTANT / (NUM_CITIES * shortestLength);
+            antPheromones.fill(pheromoneInitial);
+            updateChoiceInfo();
+        }
+        double deposit = EVAPORATION_RATE * PHEROMONE_CONSTANT / shortestLength;
+        for (int routeIteration = 0; routeIteration < NUM_CITIES; routeIteration++) 
+        {
+            int firstCity = shortestPath[routeIteration];
+            int secondCity = shortestPath[(routeIteration + 1) % NUM_CITIES];
+            antPheromones.setEdge(firstCity, secondCity, (1 - EVAPORATION_RATE) * antPheromones.get(firstCity, secondCity) + deposit);
+            refreshChoiceInfo(firstCity, secondCity);
         }
+    }
 
-        return 0;
+    /**
+     * Ant Colony System local update: pulls every edge of the closed tour towards tau_0,
+     * which makes the next ants less likely to repeat it.
+     */
+    private void wearRoute(int[] route) 
+    {
+        for (int routeIteration = 0; routeIteration < NUM_CITIES; routeIteration++) 
+        {
+            int firstCity = route[routeIteration];
+            int secondCity = route[(routeIteration + 1) % NUM_CITIES];
+            double pheromone = antPheromones.get(firstCity, secondCity);
+            antPheromones.setEdge(firstCity, secondCity, (1 - ACS_LOCAL_EVAPORATION) * pheromone + ACS_LOCAL_EVAPORATION * pheromoneInitial);
+            refreshChoiceInfo(firstCity, secondCity);
+        }
     }
 
     /**
-     * Updates the pheromone levels on the edges based on ant routes.
+     * Recomputes tau^alpha * eta^beta for a single edge after its pheromone changed.
      */
-    private void updatePHEROMONES() 
+    private void refreshChoiceInfo(int firstCity, int secondCity) 
     {
-        for (int antInteration = 0; antInteration < NUM_ANTS; antInteration++) 
+        double previous = choiceInfo.get(firstCity, secondCity);
+        choiceInfo.setEdge(firstCity, secondCity,
+                Math.pow(antPheromones.get(firstCity, secondCity), PHEROMONE_WEIGHT) * heuristics.get(firstCity, secondCity));
+        if (rowTotals != null) 
         {
-            double pathLength = length(antInteration); // current path length for antIndex
-            for (int routeIteration = 0; routeIteration < NUM_CITIES - 1; routeIteration++) 
+            // the stored value, which reduced precision may have rounded
+            double delta = choiceInfo.get(firstCity, secondCity) - previous;
+            addRowWeight(firstCity, secondCity, delta);
+            addRowWeight(secondCity, firstCity, delta);
+        }
+    }
+
+    /**
+     * Applies the action to the storage slots [0, length), split over the common fork/join pool for large matrices.
+     */
+    private void sweep(int length, SweepAction action) 
+    {
+        if (length < PARALLEL_SWEEP_THRESHOLD) 
+        {
+            action.apply(0, length);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new SweepTask(action, 0, length));
+    }
+
+    /**
+     * Scratch buffers, random stream and local search owned by one construction thread.
+     */
+    private static class AntWorker 
+    {
+        final double [] candidateWeights;
+        final int [] candidateCities;
+        final int [] positions;
+        // 1 for cities the current ant may still visit, 0 otherwise, kept only while a row scorer is in use
+        final double [] openCities;
+        // unordered set of the cities the current ant has not visited, kept only while row sampling is in use
+        final int [] unvisitedCities;
+        final int [] unvisitedPositions;
+        int unvisitedCount;
+        // length of the path route() is building, closing edge included once it is complete
+        double routeLength;
+        final RandomSource randoms;
+        final LocalSearch localSearch;
+
+        AntWorker(int numberOfCities, RandomSource randoms, LocalSearch localSearch) 
+        {
+            this.candidateWeights = new double[numberOfCities];
+            this.candidateCities = new int[numberOfCities];
+            this.positions = new int[numberOfCities];
+            this.openCities = new double[numberOfCities];
+            this.unvisitedCities = new int[numberOfCities];
+            this.unvisitedPositions = new int[numberOfCities];
+            this.randoms = randoms;
+            this.localSearch = localSearch;
+        }
+
+        void resetUnvisited() 
+        {
+            for (int city = 0; city < unvisitedCities.length; city++) 
             {
-                int firstCity = antRoutes[antInteration][routeIteration];
-                int secondCity = antRoutes[antInteration][routeIteration + 1];
-                deltaPheromones[firstCity][secondCity] += PHEROMONE_CONSTANT / pathLength;
-                deltaPheromones[secondCity][firstCity] += PHEROMONE_CONSTANT / pathLength;
+                unvisitedCities[city] = city;
+                unvisitedPositions[city] = city;
             }
+            unvisitedCount = unvisitedCities.length;
         }
-        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) 
+
+        /**
+         * Removes a city from the unvisited set in O(1) by moving the last entry into its place.
+         */
+        void removeUnvisited(int city) 
+        {
+            int position = unvisitedPositions[city];
+            int last = unvisitedCities[--unvisitedCount];
+            unvisitedCities[position] = last;
+            unvisitedPositions[last] = position;
+        }
+    }
+
+    /**
+     * Work applied to a contiguous range of matrix storage slots.
+     */
+    private interface SweepAction 
+    {
+        void apply(int from, int to);
+    }
+
+    /**
+     * Splits a slot range in halves until it is small enough to run directly.
+     */
+    private static class SweepTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final SweepAction action;
+        private final int from;
+        private final int to;
+
+        SweepTask(SweepAction action, int from, int to) 
         {
-            for (int index = 0; index < NUM_CITIES; index++) 
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() 
+        {
+            if (to - from <= SWEEP_CHUNK_SIZE) 
             {
-                antPheromones[cityIteration][index] = (1 - EVAPORATION_RATE) * antPheromones[cityIteration][index] + deltaPheromones[cityIteration][index];
-                deltaPheromones[cityIteration][index] = 0.0;
+                action.apply(from, to);
+                return;
             }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SweepTask(action, from, middle), new SweepTask(action, middle, to));
         }
     }
 }
@@ -1,4 +1,5 @@
 import mpi.*;
+import java.util.Arrays;
 
 /**
  * ACOMpi class represents an Ant Colony Optimization algorithm using MPI for parallelization.
@@ -10,7 +11,9 @@ public class ACOMpi {
     private int NUM_CITIES;
     private double PHEROMONE_WEIGHT, PHEROMONE_CONSTANT ,DISTANCE_WEIGHT, MAX_PHEROMONE, EVAPORATION_RATE;
     private double shortestLength;
-    private Randoms randoms;
+    private RandomSource randoms;
+    private ACO.DistanceMetric distanceMetric = ACO.DistanceMetric.EUCLIDEAN;
+    private DoubleMatrix givenDistances;
     private int rank;
     private int size;
     private int rankOfset;
@@ -19,10 +22,14 @@ public class ACOMpi {
     int[] shortestPath; 
     int[][] antRouteGraph;   
     int[][] antRoutes;  
+    long[][] visitedCities;
     double[][] cities; 
     double[] antPheromones; 
     double[][] deltaPheromones;
     double[][] cityLeftToTraverse;
+    double[][] distances;
+    double[][] heuristics;
+    double[][] choiceInfo;
 
     /**
      * Constructor for ACOMpi class.
@@ -37,12 +44,35 @@ public class ACOMpi {
         this.EVAPORATION_RATE = evaporation_rate;
         this.MAX_PHEROMONE = max_pheromone;
         this.START_CITY = start_city;
-        this.randoms = new Randoms(21);
+        // every rank draws its own stream, otherwise all ranks would build the same tours
+        this.randoms = new SplittableRandoms(21, rank);
         this.rank = rank;
         this.size = size;
         this.rankOfset = rank * NUM_CITIES * NUM_CITIES;
     }
 
+    /**
+     * Replaces the random generator, e.g. new Randoms(21) to reproduce runs made before per-rank streams.
+     * Must be set before init().
+     */
+    public void setRandomSource(RandomSource randoms) {
+        this.randoms = randoms;
+    }
+
+    /**
+     * Selects how distances are computed from the city positions, plain Euclidean by default.
+     */
+    public void setDistanceMetric(ACO.DistanceMetric distanceMetric) {
+        this.distanceMetric = distanceMetric;
+    }
+
+    /**
+     * Uses the given distances instead of the city positions, as the EXPLICIT metric requires.
+     */
+    public void setDistances(DoubleMatrix distances) {
+        this.givenDistances = distances;
+    }
+
     /**
      * Initializes the data structures for the ACO algorithm.
      */
@@ -73,8 +103,10 @@ public class ACOMpi {
 
         // Initialization of antRoutes and best route
         antRoutes = new int[NUM_ANTS][];
+        visitedCities = new long[NUM_ANTS][];
         for (int antsIteration = 0; antsIteration < NUM_ANTS; antsIteration++) {
             antRoutes[antsIteration] = new int[NUM_CITIES];
+            visitedCities[antsIteration] = new long[(NUM_CITIES + 63) >>> 6];
             for (int cityItr = 0; cityItr < NUM_CITIES; cityItr++) {
                 antRoutes[antsIteration][cityItr] = -1;
             }
@@ -110,7 +142,6 @@ public class ACOMpi {
      * It prints the best route found and its length.
      */
     public void result() {
-        shortestLength += calcDistance(shortestPath[NUM_CITIES - 1], START_CITY);
         System.out.println(" BEST ROUTE:");
         for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) {
             if (shortestPath[cityIteration] == 0) {
@@ -130,6 +161,11 @@ public class ACOMpi {
      * Optimize the Ant Colony Optimization algorithm for a specified number of iterations.
      */
     public void optimize(int ITERATIONS) {
+        if (distances == null) {
+            computeDistances();
+        }
+        updateChoiceInfo();
+
         for (int index = 1; index <= ITERATIONS; index++) {
             for (int antIteration = 0; antIteration < NUM_ANTS; antIteration++) {
                 while (0 != isRouteValid(antIteration, index)) {
@@ -147,6 +183,7 @@ public class ACOMpi {
                 }
             }
             updatePheromones();
+            updateChoiceInfo();
             for (int antItr = 0; antItr < NUM_ANTS; antItr++) {
                 for (int cityItr = 0; cityItr < NUM_CITIES; cityItr++) {
                     antRoutes[antItr][cityItr] = -1;
@@ -156,11 +193,45 @@ public class ACOMpi {
     }
 
     /**
-     * Calculate the Euclidean calcDistance between two cities.
+     * Calculate the distance between two cities with the configured metric, or look it up when distances were given.
      */
     private double calcDistance(int firstCity, int secondCity) {
-        return Math.sqrt(Math.pow(cities[firstCity][0] - cities[secondCity][0], 2)
-                + Math.pow(cities[firstCity][1] - cities[secondCity][1], 2));
+        if (givenDistances != null) {
+            return givenDistances.get(firstCity, secondCity);
+        }
+        return ACO.distance(distanceMetric, cities[firstCity], cities[secondCity]);
+    }
+
+    /**
+     * Cache the distance between every pair of cities and the heuristic term eta^beta.
+     */
+    private void computeDistances() {
+        this.distances = new double[NUM_CITIES][];
+        this.heuristics = new double[NUM_CITIES][];
+        this.choiceInfo = new double[NUM_CITIES][];
+        for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) {
+            this.distances[firstCity] = new double[NUM_CITIES];
+            this.heuristics[firstCity] = new double[NUM_CITIES];
+            this.choiceInfo[firstCity] = new double[NUM_CITIES];
+            for (int secondCity = 0; secondCity < NUM_CITIES; secondCity++) {
+                double distance = calcDistance(firstCity, secondCity);
+                distances[firstCity][secondCity] = distance;
+                // cities rounded onto each other would get an infinite heuristic, treat them as half a unit apart
+                heuristics[firstCity][secondCity] = (firstCity == secondCity) ? 0.0 : Math.pow(1 / (distance > 0 ? distance : 0.5), DISTANCE_WEIGHT);
+            }
+        }
+    }
+
+    /**
+     * Refresh the choice-info matrix tau^alpha * eta^beta from this rank's pheromone block.
+     */
+    private void updateChoiceInfo() {
+        for (int firstCity = 0; firstCity < NUM_CITIES; firstCity++) {
+            for (int secondCity = 0; secondCity < NUM_CITIES; secondCity++) {
+                choiceInfo[firstCity][secondCity] = Math.pow(antPheromones[rankOfset + firstCity * NUM_CITIES + secondCity], PHEROMONE_WEIGHT) 
+                * heuristics[firstCity][secondCity];
+            }
+        }
     }
 
     /**
@@ -174,35 +245,21 @@ public class ACOMpi {
      * Check if a city has been visited by a particular ant.
      */
     private boolean visited(int antIndex, int city) {
-        for (int cityIteration = 0; cityIteration < NUM_CITIES; cityIteration++) {
-            if (antRoutes[antIndex][cityIteration] == -1) {
-                break;
-            }
-            if (antRoutes[antIndex][cityIteration] == city) {
-                return true;
-            }
-        }
-        return false;
+        return (visitedCities[antIndex][city >>> 6] & (1L << city)) != 0;
     }
 
     /**
-     * Calculate the Phi value for the transition probability in the Ant Colony Optimization algorithm.
+     * Mark a city as visited in the tabu bitset of a particular ant.
      */
-    private double calculateProbability(int firstCity, int secondCity, int antIndex) {
-        double attractive = Math.pow(1 / calcDistance(firstCity, secondCity), DISTANCE_WEIGHT);
-        double pheromoneLevel = Math.pow(antPheromones[rankOfset + firstCity * NUM_CITIES + secondCity], PHEROMONE_WEIGHT);
+    private void markVisited(int antIndex, int city) {
+        visitedCities[antIndex][city >>> 6] |= 1L << city;
+    }
 
-        double sum = 0.0;
-        for (int cityIndex = 0; cityIndex < NUM_CITIES; cityIndex++) {
-            if (connectionExists(firstCity, cityIndex)) {
-                if (!visited(antIndex, cityIndex)) {
-                    double attractiveness = Math.pow(1 / calcDistance(firstCity, cityIndex), DISTANCE_WEIGHT);
-                    double pheromone_level = Math.pow(antPheromones[rankOfset + firstCity * NUM_CITIES + cityIndex], PHEROMONE_WEIGHT);
-                    sum += attractiveness * pheromone_level;
-                }
-            }
-        }
-        return (attractive * pheromoneLevel) / sum;
+    /**
+     * Clear the tabu bitset of a particular ant.
+     */
+    private void clearVisited(int antIndex) {
+        Arrays.fill(visitedCities[antIndex], 0L);
     }
 
     /**
@@ -212,22 +269,22 @@ public class ACOMpi {
         double sum = 0.0;
         for (int cityItr = 0; cityItr < NUM_CITIES; cityItr++) {
             if (cityItr == NUM_CITIES - 1) {
-                sum += calcDistance(antRoutes[antIndex][cityItr], antRoutes[antIndex][0]);
+                sum += distances[antRoutes[antIndex][cityItr]][antRoutes[antIndex][0]];
             } else {
-                sum += calcDistance(antRoutes[antIndex][cityItr], antRoutes[antIndex][cityItr + 1]);
+                sum += distances[antRoutes[antIndex][cityItr]][antRoutes[antIndex][cityItr + 1]];
             }
         }
         return sum;
     }
 
     /**
-     * Choose the next city for the ant based on transition probabilities.
+     * Choose the next city for the ant by walking the unnormalised weights in cityLeftToTraverse.
      */
-    private int city() {
-        double randomGen = randoms.generateUniform();
+    private int city(int count, double total) {
+        double randomGen = randoms.generateUniform() * total;
         int cityIndex = 0;
         double sum = cityLeftToTraverse[cityIndex][0];
-        while (sum < randomGen) {
+        while (sum < randomGen && cityIndex < count - 1) {
             cityIndex++;
             sum += cityLeftToTraverse[cityIndex][0];
         }
@@ -238,18 +295,22 @@ public class ACOMpi {
      * Generate the route for an ant using the transition probabilities.
      */
     private void route(int antIndex) {
+        clearVisited(antIndex);
         antRoutes[antIndex][0] = START_CITY;
+        markVisited(antIndex, START_CITY);
         for (int cityIteration = 0; cityIteration < NUM_CITIES - 1; cityIteration++) {
             int firstCity = antRoutes[antIndex][cityIteration];
             int count = 0;
+            double total = 0.0;
             for (int cityIndex = 0; cityIndex < NUM_CITIES; cityIndex++) {
                 if (firstCity == cityIndex) {
                     continue;
                 }
                 if (connectionExists(firstCity, cityIndex)) {
                     if (!visited(antIndex, cityIndex)) {
-                        cityLeftToTraverse[count][0] = calculateProbability(firstCity, cityIndex, antIndex);
+                        cityLeftToTraverse[count][0] = choiceInfo[firstCity][cityIndex];
                         cityLeftToTraverse[count][1] = (double) cityIndex;
+                        total += cityLeftToTraverse[count][0];
                         count++;
                     }
                 }
@@ -259,7 +320,9 @@ public class ACOMpi {
                 return; // deadlock
             }
 
-            antRoutes[antIndex][cityIteration + 1] = city();
+            int nextCity = city(count, total);
+            antRoutes[antIndex][cityIteration + 1] = nextCity;
+            markVisited(antIndex, nextCity);
         }
     }
 
@@ -267,6 +330,7 @@ public class ACOMpi {
      * check if the route discovered by ant is valid or not
      */
     private int isRouteValid(int antIndex, int iteration) {
+        clearVisited(antIndex);
         for (int cityItr = 0; cityItr < NUM_CITIES - 1; cityItr++) {
             int firstCity = antRoutes[antIndex][cityItr];
             int secondCity = antRoutes[antIndex][cityItr + 1];
@@ -276,12 +340,15 @@ public class ACOMpi {
             if (!connectionExists(firstCity, secondCity)) {
                 return -2;
             }
-            for (int index = 0; index < cityItr - 1; index++) {
-                if (antRoutes[antIndex][cityItr] == antRoutes[antIndex][index]) {
-                    return -3;
-                }
+            if (visited(antIndex, firstCity)) {
+                return -3;
             }
+            markVisited(antIndex, firstCity);
+        }
+        if (visited(antIndex, antRoutes[antIndex][NUM_CITIES - 1])) {
+            return -3;
         }
+        markVisited(antIndex, antRoutes[antIndex][NUM_CITIES - 1]);
 
         if (!connectionExists(START_CITY, antRoutes[antIndex][NUM_CITIES - 1])) {
             return -4;
@@ -0,0 +1,172 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Checkpoint is the state ACO needs to continue a run exactly where it stopped: the pheromone slots,
+ * the best tour, the iteration and evaluation counters, the variant's pheromone bounds and the state of
+ * every worker's random stream. Choice info, row sums and the like are rebuilt from it.
+ * The pheromones are held off the heap in the precision of the colony's matrix, 8 bytes per slot for double
+ * and 4 for float, which the header records, and are streamed to and from the file.
+ * Files are written to a temporary sibling first and then renamed, so a crash mid-write keeps the previous one.
+ * Version 1 files, which always hold doubles, are still read.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x41434f4b; // "ACOK"
+    private static final int VERSION = 2;
+
+    int numberOfCities;
+    int numberOfAnts;
+    int variant;
+    int iteration;
+    long evaluations;
+    int lastImprovement;
+    double shortestLength;
+    double pheromoneScale;
+    double pheromoneMax;
+    double pheromoneMin;
+    double pheromoneInitial;
+    int[] shortestPath;
+    long[][] randomStates;
+    int pheromoneBytes;
+    OffHeapBuffer pheromones;
+
+    /**
+     * Pheromone of the given slot, widened to double.
+     */
+    double pheromone(long slot)
+    {
+        return pheromoneBytes == 4 ? Float.intBitsToFloat(pheromones.getInt(slot)) : pheromones.getDouble(slot);
+    }
+
+    /**
+     * Stores the pheromone of the given slot in the checkpoint's precision. Values read from a float matrix
+     * narrow back to float exactly.
+     */
+    void setPheromone(long slot, double value)
+    {
+        if (pheromoneBytes == 4)
+        {
+            pheromones.setInt(slot, Float.floatToRawIntBits((float) value));
+        }
+        else
+        {
+            pheromones.setDouble(slot, value);
+        }
+    }
+
+    public void write(Path path) throws IOException
+    {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numberOfCities);
+            out.writeInt(numberOfAnts);
+            out.writeInt(variant);
+            out.writeInt(iteration);
+            out.writeLong(evaluations);
+            out.writeInt(lastImprovement);
+            out.writeDouble(shortestLength);
+            out.writeDouble(pheromoneScale);
+            out.writeDouble(pheromoneMax);
+            out.writeDouble(pheromoneMin);
+            out.writeDouble(pheromoneInitial);
+            for (int city : shortestPath)
+            {
+                out.writeInt(city);
+            }
+            out.writeInt(randomStates.length);
+            for (long[] state : randomStates)
+            {
+                out.writeInt(state.length);
+                for (long word : state)
+                {
+                    out.writeLong(word);
+                }
+            }
+            out.writeInt(pheromoneBytes);
+            out.writeLong(pheromones.length());
+            for (long slot = 0; slot < pheromones.length(); slot++)
+            {
+                if (pheromoneBytes == 4)
+                {
+                    out.writeInt(pheromones.getInt(slot));
+                }
+                else
+                {
+                    out.writeDouble(pheromones.getDouble(slot));
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Checkpoint read(Path path) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException(path + " is not an ACO checkpoint");
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != 1)
+            {
+                throw new IOException(path + " is checkpoint version " + version + ", expected " + VERSION);
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.numberOfCities = in.readInt();
+            checkpoint.numberOfAnts = in.readInt();
+            checkpoint.variant = in.readInt();
+            checkpoint.iteration = in.readInt();
+            checkpoint.evaluations = in.readLong();
+            checkpoint.lastImprovement = in.readInt();
+            checkpoint.shortestLength = in.readDouble();
+            checkpoint.pheromoneScale = in.readDouble();
+            checkpoint.pheromoneMax = in.readDouble();
+            checkpoint.pheromoneMin = in.readDouble();
+            checkpoint.pheromoneInitial = in.readDouble();
+            checkpoint.shortestPath = new int[checkpoint.numberOfCities];
+            for (int position = 0; position < checkpoint.numberOfCities; position++)
+            {
+                checkpoint.shortestPath[position] = in.readInt();
+            }
+            checkpoint.randomStates = new long[in.readInt()][];
+            for (int stream = 0; stream < checkpoint.randomStates.length; stream++)
+            {
+                checkpoint.randomStates[stream] = new long[in.readInt()];
+                for (int word = 0; word < checkpoint.randomStates[stream].length; word++)
+                {
+                    checkpoint.randomStates[stream][word] = in.readLong();
+                }
+            }
+            checkpoint.pheromoneBytes = version == 1 ? 8 : in.readInt();
+            if (checkpoint.pheromoneBytes != 8 && checkpoint.pheromoneBytes != 4)
+            {
+                throw new IOException(path + " holds pheromones of " + checkpoint.pheromoneBytes + " bytes");
+            }
+            long length = version == 1 ? in.readInt() : in.readLong();
+            checkpoint.pheromones = new OffHeapBuffer(length, checkpoint.pheromoneBytes);
+            for (long slot = 0; slot < length; slot++)
+            {
+                if (checkpoint.pheromoneBytes == 4)
+                {
+                    checkpoint.pheromones.setInt(slot, in.readInt());
+                }
+                else
+                {
+                    checkpoint.pheromones.setDouble(slot, in.readDouble());
+                }
+            }
+            return checkpoint;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * CityGraph is the undirected graph of the cities an ant may travel between.
+ * Every city has a row of positions that the engine walks to visit its neighbours: only the neighbours
+ * when the graph is stored sparsely, every city when it is dense. A position that holds no edge reads as -1.
+ * Laid end to end, the rows give each edge a slot that row-indexed arrays use as their storage index.
+ */
+public interface CityGraph {
+
+    /**
+     * Number of cities in the graph.
+     */
+    int size();
+
+    boolean contains(int firstCity, int secondCity);
+
+    /**
+     * Number of cities joined to the given one.
+     */
+    int degree(int city);
+
+    /**
+     * Number of positions in the row of the given city.
+     */
+    int rowLength(int city);
+
+    /**
+     * Slot of the first position in the row of the given city.
+     */
+    long rowOffset(int city);
+
+    /**
+     * City at the given position of a row, or -1 if the position holds no edge.
+     */
+    int neighbour(int city, int position);
+
+    /**
+     * Position of the second city in the row of the first, or -1 if they are not joined.
+     */
+    int position(int firstCity, int secondCity);
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * CsrGraph class is the undirected city graph in compressed sparse row form, for graphs far from complete.
+ * The neighbours of a city sit in neighbours[rowStart[city] .. rowStart[city + 1]), sorted by index,
+ * and each of those positions is an edge slot that edge-indexed matrices use as their storage index.
+ * Checking an edge is a binary search over the row, so dense graphs are better kept in a DenseGraph.
+ */
+public class CsrGraph implements CityGraph {
+
+    private final int[] rowStart;
+    private final int[] neighbours;
+
+    private CsrGraph(int[] rowStart, int[] neighbours)
+    {
+        this.rowStart = rowStart;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * Number of cities in the graph.
+     */
+    public int size()
+    {
+        return rowStart.length - 1;
+    }
+
+    /**
+     * Number of edge slots, every undirected edge is stored once per direction.
+     */
+    public int edgeCount()
+    {
+        return neighbours.length;
+    }
+
+    /**
+     * First edge slot of the given city.
+     */
+    public int start(int city)
+    {
+        return rowStart[city];
+    }
+
+    /**
+     * One past the last edge slot of the given city.
+     */
+    public int end(int city)
+    {
+        return rowStart[city + 1];
+    }
+
+    /**
+     * City at the far end of the given edge slot.
+     */
+    public int target(int slot)
+    {
+        return neighbours[slot];
+    }
+
+    /**
+     * Edge slot from firstCity to secondCity, or -1 if the cities are not connected.
+     */
+    public int edge(int firstCity, int secondCity)
+    {
+        int slot = Arrays.binarySearch(neighbours, rowStart[firstCity], rowStart[firstCity + 1], secondCity);
+        return slot >= 0 ? slot : -1;
+    }
+
+    public boolean contains(int firstCity, int secondCity)
+    {
+        return edge(firstCity, secondCity) >= 0;
+    }
+
+    public int degree(int city)
+    {
+        return rowStart[city + 1] - rowStart[city];
+    }
+
+    public int rowLength(int city)
+    {
+        return rowStart[city + 1] - rowStart[city];
+    }
+
+    public long rowOffset(int city)
+    {
+        return rowStart[city];
+    }
+
+    public int neighbour(int city, int position)
+    {
+        return neighbours[rowStart[city] + position];
+    }
+
+    public int position(int firstCity, int secondCity)
+    {
+        int slot = edge(firstCity, secondCity);
+        return slot >= 0 ? slot - rowStart[firstCity] : -1;
+    }
+
+    /**
+     * Builder collects undirected edges in any order, duplicates and self loops included,
+     * and turns them into a CsrGraph with a counting sort.
+     */
+    public static class Builder {
+
+        // every edge takes a slot in both rows, and the slots are indexed by int
+        static final int MAX_EDGES = (Integer.MAX_VALUE - 8) / 2;
+
+        private final int size;
+        private int[] firstCities = new int[16];
+        private int[] secondCities = new int[16];
+        private int count;
+
+        public Builder(int size)
+        {
+            this.size = size;
+        }
+
+        public void addEdge(int firstCity, int secondCity)
+        {
+            if (firstCity == secondCity)
+            {
+                return;
+            }
+            if (count == MAX_EDGES)
+            {
+                throw new IllegalArgumentException("A sparse graph holds at most " + MAX_EDGES
+                        + " edges including repeats, keep graphs this large dense");
+            }
+            if (count == firstCities.length)
+            {
+                int capacity = (int) Math.min(2L * count, MAX_EDGES);
+                firstCities = Arrays.copyOf(firstCities, capacity);
+                secondCities = Arrays.copyOf(secondCities, capacity);
+            }
+            firstCities[count] = firstCity;
+            secondCities[count] = secondCity;
+            count++;
+        }
+
+        public CsrGraph build()
+        {
+            int[] rowStart = new int[size + 1];
+            for (int edge = 0; edge < count; edge++)
+            {
+                rowStart[firstCities[edge] + 1]++;
+                rowStart[secondCities[edge] + 1]++;
+            }
+            for (int city = 0; city < size; city++)
+            {
+                rowStart[city + 1] += rowStart[city];
+            }
+
+            int[] fill = Arrays.copyOf(rowStart, size);
+            int[] neighbours = new int[rowStart[size]];
+            for (int edge = 0; edge < count; edge++)
+            {
+                neighbours[fill[firstCities[edge]]++] = secondCities[edge];
+                neighbours[fill[secondCities[edge]]++] = firstCities[edge];
+            }
+            firstCities = null;
+            secondCities = null;
+
+            // sort every row and squeeze out repeated edges
+            int[] uniqueStart = new int[size + 1];
+            int write = 0;
+            for (int city = 0; city < size; city++)
+            {
+                int from = rowStart[city];
+                int to = rowStart[city + 1];
+                Arrays.sort(neighbours, from, to);
+                uniqueStart[city] = write;
+                for (int slot = from; slot < to; slot++)
+                {
+                    if (slot == from || neighbours[slot] != neighbours[slot - 1])
+                    {
+                        neighbours[write++] = neighbours[slot];
+                    }
+                }
+            }
+            uniqueStart[size] = write;
+            return new CsrGraph(uniqueStart, Arrays.copyOf(neighbours, write));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * DenseGraph is the undirected city graph as an N x N adjacency bitset, so checking an edge is one array read.
+ * It takes an eighth of the memory of an int[N][N] of flags, and once every pair of cities is joined
+ * the bits are dropped and the graph is complete without any storage.
+ * The row of a city has a position for every city; the city itself and the cities it is not joined to hold no edge.
+ */
+public class DenseGraph implements CityGraph {
+
+    private final int size;
+    private long[] bits;
+    private int[] degrees;
+    private long edgeCount;
+    private boolean complete;
+
+    /**
+     * Creates a graph without edges. The bitset is only allocated by the first join().
+     */
+    public DenseGraph(int size)
+    {
+        if ((long) size * size > 64L * (Integer.MAX_VALUE - 8))
+        {
+            throw new IllegalArgumentException("Too many cities for a dense graph: " + size);
+        }
+        this.size = size;
+        this.complete = size < 2;
+    }
+
+    /**
+     * Creates the complete graph on the given number of cities, which stores nothing.
+     */
+    public static DenseGraph complete(int size)
+    {
+        DenseGraph graph = new DenseGraph(size);
+        graph.joinAll();
+        return graph;
+    }
+
+    /**
+     * Joins two cities, ignoring self loops and edges that already exist.
+     */
+    public void join(int firstCity, int secondCity)
+    {
+        if (complete || firstCity == secondCity || contains(firstCity, secondCity))
+        {
+            return;
+        }
+        if (bits == null)
+        {
+            bits = new long[(int) (((long) size * size + 63) >>> 6)];
+            degrees = new int[size];
+        }
+        set((long) firstCity * size + secondCity);
+        set((long) secondCity * size + firstCity);
+        degrees[firstCity]++;
+        degrees[secondCity]++;
+        if (++edgeCount == (long) size * (size - 1) / 2)
+        {
+            joinAll();
+        }
+    }
+
+    /**
+     * Joins every pair of cities and releases the bitset.
+     */
+    public void joinAll()
+    {
+        complete = true;
+        bits = null;
+        degrees = null;
+    }
+
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains(int firstCity, int secondCity)
+    {
+        if (complete)
+        {
+            return firstCity != secondCity;
+        }
+        if (bits == null)
+        {
+            return false;
+        }
+        long bit = (long) firstCity * size + secondCity;
+        return (bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    public int degree(int city)
+    {
+        if (complete)
+        {
+            return size - 1;
+        }
+        return degrees == null ? 0 : degrees[city];
+    }
+
+    public int rowLength(int city)
+    {
+        return size;
+    }
+
+    public long rowOffset(int city)
+    {
+        return (long) city * size;
+    }
+
+    public int neighbour(int city, int position)
+    {
+        return contains(city, position) ? position : -1;
+    }
+
+    public int position(int firstCity, int secondCity)
+    {
+        return contains(firstCity, secondCity) ? secondCity : -1;
+    }
+
+    private void set(long bit)
+    {
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Arrays;
+
+/**
+ * DenseMatrix stores an N x N matrix in one flat row-major double[].
+ */
+public class DenseMatrix implements DoubleMatrix {
+
+    private final int size;
+    final double[] values;
+
+    public DenseMatrix(int size)
+    {
+        if ((long) size * size > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException("Too many cities for a dense matrix: " + size);
+        }
+        this.size = size;
+        this.values = new double[size * size];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int length()
+    {
+        return values.length;
+    }
+
+    public int index(int row, int col)
+    {
+        return row * size + col;
+    }
+
+    public double get(int row, int col)
+    {
+        return values[row * size + col];
+    }
+
+    public void set(int row, int col, double value)
+    {
+        values[row * size + col] = value;
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        values[firstCity * size + secondCity] = value;
+        values[secondCity * size + firstCity] = value;
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        values[firstCity * size + secondCity] += value;
+        values[secondCity * size + firstCity] += value;
+    }
+
+    public double getAt(int index)
+    {
+        return values[index];
+    }
+
+    public void setAt(int index, double value)
+    {
+        values[index] = value;
+    }
+
+    public void fill(double value)
+    {
+        Arrays.fill(values, value);
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * DoubleMatrix is the accessor API the ACO engine uses for its N x N matrices
+ * (pheromones, pheromone deltas, distances, heuristics and choice-info).
+ * Storage is addressed both by (row, col) and by a flat slot index, so whole-matrix
+ * passes such as evaporation can stream through the backing storage in order.
+ */
+public interface DoubleMatrix {
+
+    /**
+     * Number of rows (and columns) of the matrix.
+     */
+    int size();
+
+    /**
+     * Number of storage slots backing the matrix.
+     */
+    int length();
+
+    /**
+     * Storage slot holding the entry at (row, col).
+     */
+    int index(int row, int col);
+
+    double get(int row, int col);
+
+    void set(int row, int col, double value);
+
+    /**
+     * Sets both (firstCity, secondCity) and (secondCity, firstCity).
+     */
+    void setEdge(int firstCity, int secondCity, double value);
+
+    /**
+     * Adds to both (firstCity, secondCity) and (secondCity, firstCity).
+     */
+    void addEdge(int firstCity, int secondCity, double value);
+
+    double getAt(int index);
+
+    void setAt(int index, double value);
+
+    /**
+     * Sets every storage slot to the given value.
+     */
+    void fill(double value);
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/**
+ * FloatMatrix stores an N x N matrix in a float[], either row-major or as a packed upper triangle,
+ * halving the memory and bandwidth of the double layouts. Values keep about seven significant digits,
+ * plenty for pheromones and choice info that only weight a roulette wheel.
+ */
+public class FloatMatrix implements DoubleMatrix {
+
+    private final int size;
+    private final boolean symmetric;
+    final float[] values;
+
+    public FloatMatrix(int size, boolean symmetric)
+    {
+        long length = symmetric ? (long) size * (size + 1) / 2 : (long) size * size;
+        if (length > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException("Too many cities for a float matrix: " + size);
+        }
+        this.size = size;
+        this.symmetric = symmetric;
+        this.values = new float[(int) length];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int length()
+    {
+        return values.length;
+    }
+
+    public int index(int row, int col)
+    {
+        if (!symmetric)
+        {
+            return row * size + col;
+        }
+        if (row > col)
+        {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        return (int) (((long) row * (2 * size - row - 1)) >>> 1) + col;
+    }
+
+    public double get(int row, int col)
+    {
+        return values[index(row, col)];
+    }
+
+    public void set(int row, int col, double value)
+    {
+        values[index(row, col)] = (float) value;
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        values[index(firstCity, secondCity)] = (float) value;
+        values[index(secondCity, firstCity)] = (float) value;
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        int firstSlot = index(firstCity, secondCity);
+        int secondSlot = index(secondCity, firstCity);
+        values[firstSlot] += (float) value;
+        if (secondSlot != firstSlot)
+        {
+            values[secondSlot] += (float) value;
+        }
+    }
+
+    public double getAt(int index)
+    {
+        return values[index];
+    }
+
+    public void setAt(int index, double value)
+    {
+        values[index] = (float) value;
+    }
+
+    public void fill(double value)
+    {
+        Arrays.fill(values, (float) value);
+    }
+}
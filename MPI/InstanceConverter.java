@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InstanceConverter writes an instance once in the binary format read by TspInstance, with its distances
+ * and candidate lists already computed, so the many short solves that follow skip parsing and set-up work.
+ *
+ * Usage: java InstanceConverter input output [candidates per city] [distances | heuristics weight]
+ * Passing "distances" stores the packed distance matrix; EXPLICIT instances always store it.
+ * Passing "heuristics" and the distance weight of the colony also stores the heuristic terms (1 / d)^weight,
+ * so that a colony with that weight computes nothing at start-up.
+ *
+ * Usage: java InstanceConverter verify file
+ * Checks a converted file against the SHA-256 in its header, which loading alone does not do.
+ */
+public class InstanceConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java InstanceConverter input output [candidates per city] [distances | heuristics weight]");
+            System.err.println("       java InstanceConverter verify file");
+            System.exit(1);
+        }
+        if (args[0].equals("verify")) {
+            TspInstance instance = TspInstance.load(args[1], true);
+            if (instance.getContentHash() == null) {
+                System.err.println(args[1] + " is not a converted instance");
+                System.exit(1);
+            }
+            System.out.println(args[1] + " matches its SHA-256 " + instance.getContentHash());
+            return;
+        }
+        TspInstance instance = TspInstance.load(args[0]);
+        int candidates = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        boolean withHeuristics = args.length > 4 && args[3].equals("heuristics");
+        boolean withDistances = withHeuristics || (args.length > 3 && args[3].equals("distances"));
+        double heuristicWeight = withHeuristics ? Double.parseDouble(args[4]) : 0.0;
+
+        long startTime = System.currentTimeMillis();
+        String hash = write(instance, args[1], candidates, withDistances, heuristicWeight);
+        long endTime = System.currentTimeMillis();
+
+        System.out.println("Wrote " + instance.size() + " cities of " + instance.getName() + " to " + args[1]
+                + " in " + (endTime - startTime) + "ms, SHA-256 " + hash);
+    }
+
+    /**
+     * Writes the instance and returns the content hash stored in the header.
+     * A heuristic weight other than 0 also stores the heuristic terms for that weight, together with the distances.
+     */
+    public static String write(TspInstance instance, String fileName, int candidates, boolean withDistances,
+            double heuristicWeight) throws IOException
+    {
+        boolean withHeuristics = heuristicWeight != 0.0;
+        withDistances |= withHeuristics;
+        int size = instance.size();
+        String type = instance.getEdgeWeightType();
+        ACO.DistanceMetric metric = type == null ? ACO.DistanceMetric.EUCLIDEAN : ACO.DistanceMetric.valueOf(type);
+        withDistances |= metric == ACO.DistanceMetric.EXPLICIT;
+        candidates = Math.max(0, Math.min(candidates, size - 1));
+        if (withDistances && size > TspInstance.MAX_MATRIX_SIZE)
+        {
+            throw new IllegalArgumentException("Distances can only be stored for up to " + TspInstance.MAX_MATRIX_SIZE + " cities");
+        }
+
+        byte[] name = instance.getName().getBytes(StandardCharsets.US_ASCII);
+        byte[] typeName = type == null ? new byte[0] : type.getBytes(StandardCharsets.US_ASCII);
+        long coordinatesStart = TspInstance.align(TspInstance.HEADER_SIZE + name.length + typeName.length);
+        long distancesStart = coordinatesStart + 16L * size;
+        long heuristicsStart = distancesStart + (withDistances ? 8L * size * (size + 1) / 2 : 0);
+        long candidatesStart = heuristicsStart + (withHeuristics ? 8L * size * (size + 1) / 2 : 0);
+        long fileSize = TspInstance.align(candidatesStart + 4L * size * candidates);
+        if (fileSize > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("The binary instance would be larger than 2 GB, store fewer candidates, no distances or no heuristics");
+        }
+
+        double[][] points = new double[size][];
+        for (int city = 0; city < size; city++)
+        {
+            points[city] = new double[] {instance.getX(city), instance.getY(city)};
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, TspInstance.MAGIC);
+            buffer.putInt(4, TspInstance.VERSION);
+            buffer.putInt(8, size);
+            buffer.putInt(12, candidates);
+            buffer.putInt(16, (withDistances ? TspInstance.FLAG_DISTANCES : 0) | (withHeuristics ? TspInstance.FLAG_HEURISTICS : 0));
+            buffer.putInt(20, name.length);
+            buffer.putInt(24, typeName.length);
+            buffer.put(TspInstance.HEADER_SIZE, name);
+            buffer.put(TspInstance.HEADER_SIZE + name.length, typeName);
+            buffer.putDouble(TspInstance.HEURISTIC_WEIGHT_OFFSET, heuristicWeight);
+
+            DoubleBuffer coordinates = section(buffer, coordinatesStart, distancesStart).asDoubleBuffer();
+            for (int city = 0; city < size; city++)
+            {
+                coordinates.put(points[city]);
+            }
+
+            DoubleMatrix given = MappedMatrix.of(instance);
+            if (withDistances)
+            {
+                DoubleBuffer distances = section(buffer, distancesStart, heuristicsStart).asDoubleBuffer();
+                if (given != null)
+                {
+                    // the instance already holds the packed triangle in file order
+                    distances.put(instance.getDistances());
+                }
+                else
+                {
+                    for (int firstCity = 0; firstCity < size; firstCity++)
+                    {
+                        for (int secondCity = firstCity; secondCity < size; secondCity++)
+                        {
+                            distances.put(secondCity == firstCity ? 0.0 : ACO.distance(metric, points[firstCity], points[secondCity]));
+                        }
+                    }
+                }
+            }
+
+            if (withHeuristics)
+            {
+                // the terms ACO computes, cities rounded onto each other treated as half a unit apart
+                DoubleBuffer distances = section(buffer, distancesStart, heuristicsStart).asDoubleBuffer();
+                DoubleBuffer heuristics = section(buffer, heuristicsStart, candidatesStart).asDoubleBuffer();
+                for (int firstCity = 0; firstCity < size; firstCity++)
+                {
+                    for (int secondCity = firstCity; secondCity < size; secondCity++)
+                    {
+                        double distance = distances.get();
+                        heuristics.put(secondCity == firstCity ? 0.0 : Math.pow(1 / (distance > 0 ? distance : 0.5), heuristicWeight));
+                    }
+                }
+            }
+
+            if (candidates > 0)
+            {
+                IntBuffer lists = section(buffer, candidatesStart, candidatesStart + 4L * size * candidates).asIntBuffer();
+                KdTree kdTree = given == null && metric != ACO.DistanceMetric.GEO ? new KdTree(points) : null;
+                CityGraph complete = DenseGraph.complete(size);
+                for (int city = 0; city < size; city++)
+                {
+                    int source = city;
+                    lists.put(kdTree != null ? kdTree.nearest(city, candidates) : ACO.nearest(complete, city, candidates,
+                            other -> given != null ? given.get(source, other) : ACO.distance(metric, points[source], points[other])));
+                }
+            }
+
+            byte[] hash = TspInstance.sha256(section(buffer, TspInstance.HEADER_SIZE, fileSize));
+            buffer.put(TspInstance.HASH_OFFSET, hash);
+            buffer.force();
+            return TspInstance.hex(hash);
+        }
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, long start, long end)
+    {
+        return buffer.slice((int) start, (int) (end - start)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
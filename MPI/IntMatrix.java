@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * IntMatrix stores whole numbers, such as TSPLIB rounded distances, in an int[] using the slot layout of
+ * another matrix of the same shape, so it takes half the memory of the double layouts.
+ * Next to an off-heap layout the ints can live in an OffHeapBuffer instead.
+ * Values are rounded to the nearest int when stored.
+ */
+public class IntMatrix implements DoubleMatrix {
+
+    private final DoubleMatrix layout;
+    final int[] values;
+    private final OffHeapBuffer offHeapValues;
+
+    /**
+     * Creates a zero matrix addressed like layout, whose own values are never touched.
+     */
+    public IntMatrix(DoubleMatrix layout)
+    {
+        this.layout = layout;
+        this.values = new int[layout.length()];
+        this.offHeapValues = null;
+    }
+
+    /**
+     * Creates a matrix addressed like layout that keeps its values in the given buffer of layout.length() ints.
+     */
+    public IntMatrix(DoubleMatrix layout, OffHeapBuffer values)
+    {
+        if (values.length() != layout.length())
+        {
+            throw new IllegalArgumentException("The layout has " + layout.length() + " slots but the buffer " + values.length());
+        }
+        this.layout = layout;
+        this.values = null;
+        this.offHeapValues = values;
+    }
+
+    public int size()
+    {
+        return layout.size();
+    }
+
+    public int length()
+    {
+        return layout.length();
+    }
+
+    public int index(int row, int col)
+    {
+        return layout.index(row, col);
+    }
+
+    public double get(int row, int col)
+    {
+        int index = layout.index(row, col);
+        return index >= 0 ? value(index) : 0;
+    }
+
+    public void set(int row, int col, double value)
+    {
+        store(slot(row, col), (int) Math.round(value));
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        store(slot(firstCity, secondCity), (int) Math.round(value));
+        store(slot(secondCity, firstCity), (int) Math.round(value));
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        int firstSlot = slot(firstCity, secondCity);
+        int secondSlot = slot(secondCity, firstCity);
+        store(firstSlot, value(firstSlot) + (int) Math.round(value));
+        if (secondSlot != firstSlot)
+        {
+            store(secondSlot, value(secondSlot) + (int) Math.round(value));
+        }
+    }
+
+    public double getAt(int index)
+    {
+        return value(index);
+    }
+
+    public void setAt(int index, double value)
+    {
+        store(index, (int) Math.round(value));
+    }
+
+    public void fill(double value)
+    {
+        if (values != null)
+        {
+            Arrays.fill(values, (int) Math.round(value));
+        }
+        else
+        {
+            offHeapValues.fillInt((int) Math.round(value));
+        }
+    }
+
+    private int value(int index)
+    {
+        return values != null ? values[index] : offHeapValues.getInt(index);
+    }
+
+    private void store(int index, int value)
+    {
+        if (values != null)
+        {
+            values[index] = value;
+        }
+        else
+        {
+            offHeapValues.setInt(index, value);
+        }
+    }
+
+    private int slot(int row, int col)
+    {
+        int index = layout.index(row, col);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("Cities " + row + " and " + col + " are not connected");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * KdTree class is a static 2-d tree over city coordinates.
+ * It is built once per instance in O(n log n) and answers k-nearest-neighbour queries,
+ * which is how the candidate lists used by route() are generated without an O(n^2) scan.
+ */
+public class KdTree {
+
+    private final double[][] points;
+    private final int[] order;
+
+    // Scratch state for the current query, kept as a bounded max-heap on squared distance
+    private int[] heapCities;
+    private double[] heapDistances;
+    private int heapSize;
+
+    /**
+     * Builds a balanced tree over the given points, where points[city] = {x, y}.
+     */
+    public KdTree(double[][] points)
+    {
+        this.points = points;
+        this.order = new int[points.length];
+        for (int city = 0; city < points.length; city++)
+        {
+            order[city] = city;
+        }
+        build(0, points.length, 0);
+    }
+
+    /**
+     * Returns the k cities nearest to the given city, closest first, excluding the city itself.
+     */
+    public int[] nearest(int city, int k)
+    {
+        k = Math.min(k, points.length - 1);
+        heapCities = new int[k];
+        heapDistances = new double[k];
+        heapSize = 0;
+        if (k > 0)
+        {
+            search(0, points.length, 0, city, k);
+        }
+
+        int[] neighbours = new int[heapSize];
+        for (int index = heapSize - 1; index >= 0; index--)
+        {
+            neighbours[index] = heapCities[0];
+            pop();
+        }
+        return neighbours;
+    }
+
+    /**
+     * Arranges order[low, high) so that the median on the split axis sits in the middle.
+     */
+    private void build(int low, int high, int axis)
+    {
+        if (high - low <= 1)
+        {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        select(low, high - 1, middle, axis);
+        build(low, middle, axis ^ 1);
+        build(middle + 1, high, axis ^ 1);
+    }
+
+    /**
+     * Quickselect on order[low..high] by the coordinate on the given axis.
+     */
+    private void select(int low, int high, int target, int axis)
+    {
+        while (low < high)
+        {
+            double pivot = points[order[(low + high) >>> 1]][axis];
+            int left = low;
+            int right = high;
+            while (left <= right)
+            {
+                while (points[order[left]][axis] < pivot)
+                {
+                    left++;
+                }
+                while (points[order[right]][axis] > pivot)
+                {
+                    right--;
+                }
+                if (left <= right)
+                {
+                    int swap = order[left];
+                    order[left] = order[right];
+                    order[right] = swap;
+                    left++;
+                    right--;
+                }
+            }
+            if (target <= right)
+            {
+                high = right;
+            }
+            else if (target >= left)
+            {
+                low = left;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recursively visits the subtree order[low, high), pruning halves that cannot improve the heap.
+     */
+    private void search(int low, int high, int axis, int city, int k)
+    {
+        if (low >= high)
+        {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        int node = order[middle];
+        if (node != city)
+        {
+            double dx = points[node][0] - points[city][0];
+            double dy = points[node][1] - points[city][1];
+            offer(node, dx * dx + dy * dy, k);
+        }
+
+        double split = points[city][axis] - points[node][axis];
+        if (split < 0)
+        {
+            search(low, middle, axis ^ 1, city, k);
+            if (heapSize < k || split * split < heapDistances[0])
+            {
+                search(middle + 1, high, axis ^ 1, city, k);
+            }
+        }
+        else
+        {
+            search(middle + 1, high, axis ^ 1, city, k);
+            if (heapSize < k || split * split < heapDistances[0])
+            {
+                search(low, middle, axis ^ 1, city, k);
+            }
+        }
+    }
+
+    /**
+     * Adds a city to the heap if it is closer than the current k-th nearest.
+     */
+    private void offer(int city, double distance, int k)
+    {
+        if (heapSize < k)
+        {
+            int index = heapSize++;
+            while (index > 0)
+            {
+                int parent = (index - 1) >>> 1;
+                if (heapDistances[parent] >= distance)
+                {
+                    break;
+                }
+                heapCities[index] = heapCities[parent];
+                heapDistances[index] = heapDistances[parent];
+                index = parent;
+            }
+            heapCities[index] = city;
+            heapDistances[index] = distance;
+        }
+        else if (distance < heapDistances[0])
+        {
+            siftDown(city, distance);
+        }
+    }
+
+    /**
+     * Removes the farthest city from the heap.
+     */
+    private void pop()
+    {
+        heapSize--;
+        if (heapSize > 0)
+        {
+            siftDown(heapCities[heapSize], heapDistances[heapSize]);
+        }
+    }
+
+    /**
+     * Places the given entry at the root and restores the max-heap order.
+     */
+    private void siftDown(int city, double distance)
+    {
+        int index = 0;
+        while (true)
+        {
+            int child = 2 * index + 1;
+            if (child >= heapSize)
+            {
+                break;
+            }
+            if (child + 1 < heapSize && heapDistances[child + 1] > heapDistances[child])
+            {
+                child++;
+            }
+            if (heapDistances[child] <= distance)
+            {
+                break;
+            }
+            heapCities[index] = heapCities[child];
+            heapDistances[index] = heapDistances[child];
+            index = child;
+        }
+        heapCities[index] = city;
+        heapDistances[index] = distance;
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * LocalSearch class improves a closed tour with 2-opt and Or-opt moves.
+ * The tour is kept as an array with a position index, moves are only tried towards the nearest neighbours
+ * of a city, and cities whose neighbourhood gave no improvement are switched off by don't-look bits,
+ * so a pass over an already good tour costs roughly linear time.
+ * Moves that would use an edge missing from the graph are never made.
+ * One instance holds scratch buffers and must not be shared between threads.
+ */
+public class LocalSearch {
+
+    // Smallest improvement accepted, guards against cycling on rounding noise
+    private static final double EPSILON = 1e-9;
+    // Longest run of consecutive cities moved by an Or-opt move
+    private static final int MAX_SEGMENT_LENGTH = 3;
+
+    private final DoubleMatrix distances;
+    private final CityGraph graph;
+    private final int[][] neighbours;
+
+    private int[] tour;
+    private final int[] positions;
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead;
+    private int queueSize;
+    private double gain;
+
+    /**
+     * neighbours[city] lists the cities nearest to city, closest first.
+     */
+    public LocalSearch(DoubleMatrix distances, CityGraph graph, int[][] neighbours)
+    {
+        this.distances = distances;
+        this.graph = graph;
+        this.neighbours = neighbours;
+        int size = graph.size();
+        this.positions = new int[size];
+        this.queue = new int[size];
+        this.queued = new boolean[size];
+    }
+
+    /**
+     * Improves the given tour in place until no 2-opt or Or-opt move helps, then rotates it to begin with startCity.
+     * Returns how much shorter the tour got.
+     */
+    public double improve(int[] tour, int startCity)
+    {
+        int size = tour.length;
+        if (size < 8)
+        {
+            return 0.0;
+        }
+        this.tour = tour;
+        gain = 0.0;
+        queueHead = 0;
+        queueSize = 0;
+        for (int position = 0; position < size; position++)
+        {
+            positions[tour[position]] = position;
+            push(tour[position]);
+        }
+
+        while (queueSize > 0)
+        {
+            int city = queue[queueHead];
+            queueHead = (queueHead + 1) % size;
+            queueSize--;
+            queued[city] = false;
+            if (twoOpt(city) || orOpt(city))
+            {
+                push(city);
+            }
+        }
+
+        // put the start city back in front, route() and result() rely on it
+        int offset = positions[startCity];
+        int[] rotated = queue;
+        for (int position = 0; position < size; position++)
+        {
+            rotated[position] = tour[(position + offset) % size];
+        }
+        System.arraycopy(rotated, 0, tour, 0, size);
+        return gain;
+    }
+
+    /**
+     * Tries to replace an edge at the given city and one more edge by two shorter ones.
+     */
+    private boolean twoOpt(int firstCity)
+    {
+        for (int direction = 0; direction < 2; direction++)
+        {
+            boolean forward = direction == 0;
+            int secondCity = forward ? next(firstCity) : previous(firstCity);
+            double removed = distances.get(firstCity, secondCity);
+            for (int thirdCity : neighbours[firstCity])
+            {
+                double added = distances.get(firstCity, thirdCity);
+                // neighbours come closest first, no later one can give a gain either
+                if (removed - added <= EPSILON)
+                {
+                    break;
+                }
+                int fourthCity = forward ? next(thirdCity) : previous(thirdCity);
+                if (thirdCity == secondCity || fourthCity == firstCity
+                        || !graph.contains(firstCity, thirdCity) || !graph.contains(secondCity, fourthCity))
+                {
+                    continue;
+                }
+                double moveGain = removed + distances.get(thirdCity, fourthCity) - added - distances.get(secondCity, fourthCity);
+                if (moveGain > EPSILON)
+                {
+                    gain += moveGain;
+                    exchange(firstCity, secondCity, thirdCity, fourthCity);
+                    push(secondCity);
+                    push(thirdCity);
+                    push(fourthCity);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tries to move a segment of up to three cities that begins or ends at the given city next to one of its neighbours,
+     * in either orientation.
+     */
+    private boolean orOpt(int city)
+    {
+        for (int segmentLength = 1; segmentLength <= MAX_SEGMENT_LENGTH; segmentLength++)
+        {
+            for (int direction = 0; direction < 2; direction++)
+            {
+                // segment is segmentStart..segmentEnd in forward order, with city at one of its ends
+                int segmentStart = city;
+                int segmentEnd = city;
+                for (int step = 1; step < segmentLength; step++)
+                {
+                    if (direction == 0)
+                    {
+                        segmentEnd = next(segmentEnd);
+                    }
+                    else
+                    {
+                        segmentStart = previous(segmentStart);
+                    }
+                }
+                int before = previous(segmentStart);
+                int after = next(segmentEnd);
+                if (before == after || !graph.contains(before, after))
+                {
+                    continue;
+                }
+                double removed = distances.get(before, segmentStart) + distances.get(segmentEnd, after) - distances.get(before, after);
+                if (removed <= EPSILON)
+                {
+                    continue;
+                }
+
+                for (int neighbour : neighbours[city])
+                {
+                    if (inSegment(neighbour, segmentStart, segmentLength))
+                    {
+                        continue;
+                    }
+                    // insert between neighbour and either of its tour neighbours
+                    for (int side = 0; side < 2; side++)
+                    {
+                        int left = side == 0 ? neighbour : previous(neighbour);
+                        int right = next(left);
+                        if (inSegment(left, segmentStart, segmentLength) || inSegment(right, segmentStart, segmentLength))
+                        {
+                            continue;
+                        }
+                        double edge = distances.get(left, right);
+                        boolean reversedFits = graph.contains(left, segmentEnd) && graph.contains(segmentStart, right);
+                        boolean forwardFits = graph.contains(left, segmentStart) && graph.contains(segmentEnd, right);
+                        double reversedGain = reversedFits
+                                ? removed + edge - distances.get(left, segmentEnd) - distances.get(segmentStart, right) : 0.0;
+                        double forwardGain = forwardFits
+                                ? removed + edge - distances.get(left, segmentStart) - distances.get(segmentEnd, right) : 0.0;
+                        if (reversedGain <= EPSILON && forwardGain <= EPSILON)
+                        {
+                            continue;
+                        }
+
+                        // three 2-opt exchanges: splice the segment out reversed, reconnect, then restore its orientation
+                        exchange(before, segmentStart, left, right);
+                        exchange(before, left, after, segmentEnd);
+                        if (forwardGain > reversedGain)
+                        {
+                            exchange(left, segmentEnd, segmentStart, right);
+                        }
+                        gain += Math.max(forwardGain, reversedGain);
+                        push(before);
+                        push(after);
+                        push(left);
+                        push(right);
+                        push(segmentStart);
+                        push(segmentEnd);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the city lies on the segment of the given length that starts at segmentStart.
+     */
+    private boolean inSegment(int city, int segmentStart, int segmentLength)
+    {
+        int size = tour.length;
+        int offset = positions[city] - positions[segmentStart];
+        if (offset < 0)
+        {
+            offset += size;
+        }
+        return offset < segmentLength;
+    }
+
+    /**
+     * Replaces the tour edges (a, b) and (c, d) by (a, c) and (b, d).
+     * Both edges have to be traversed the same way round, that is b follows a exactly when d follows c.
+     */
+    private void exchange(int a, int b, int c, int d)
+    {
+        if (next(a) == b)
+        {
+            reverse(positions[b], positions[c]);
+        }
+        else
+        {
+            reverse(positions[c], positions[b]);
+        }
+    }
+
+    /**
+     * Reverses the cyclic stretch of the tour from position from to position to, inclusive.
+     * If the complement is shorter it is reversed instead, which gives the same cycle.
+     */
+    private void reverse(int from, int to)
+    {
+        int size = tour.length;
+        int length = to - from;
+        if (length < 0)
+        {
+            length += size;
+        }
+        length++;
+        if (2 * length > size)
+        {
+            int swap = from;
+            from = (to + 1) % size;
+            to = (swap - 1 + size) % size;
+            length = size - length;
+        }
+        for (int step = 0; step < length / 2; step++)
+        {
+            int firstCity = tour[from];
+            int secondCity = tour[to];
+            tour[from] = secondCity;
+            positions[secondCity] = from;
+            tour[to] = firstCity;
+            positions[firstCity] = to;
+            from = from + 1 == size ? 0 : from + 1;
+            to = to == 0 ? size - 1 : to - 1;
+        }
+    }
+
+    private int next(int city)
+    {
+        int position = positions[city] + 1;
+        return tour[position == tour.length ? 0 : position];
+    }
+
+    private int previous(int city)
+    {
+        int position = positions[city];
+        return tour[position == 0 ? tour.length - 1 : position - 1];
+    }
+
+    /**
+     * Clears the don't-look bit of a city by putting it back on the work queue.
+     */
+    private void push(int city)
+    {
+        if (queued[city])
+        {
+            return;
+        }
+        queued[city] = true;
+        queue[(queueHead + queueSize) % tour.length] = city;
+        queueSize++;
+    }
+}
@@ -1,59 +1,98 @@
-import java.io.*;
+import java.io.IOException;
 
 public class Main {
     // Constants for ant colony optimization
     public static final int MAX_ITERATIONS = 1000;
     public static final int NUM_ANTS = 4;
-    public static final int NUM_CITIES = 37;
+    public static final String CITIES_FILE = "cities.txt"; // TSPLIB, "label x y" or InstanceConverter file, overridden by the first argument
     public static final double PHEROMONE_WEIGHT = 0.5;
     public static final double DISTANCE_WEIGHT = 0.8;
     public static final double PHEROMONE_CONSTANT = 1000;
     public static final double EVAPORATION_RATE = 0.6;
     public static final int MAX_PHEROMONE = 2;
     public static final int START_CITY = 0; // Source city
+    public static final int CANDIDATE_LIST_SIZE = 0; // Nearest neighbours per step, 0 considers every city
+    public static final boolean SYMMETRIC = true; // Store matrices as packed upper triangles
+    public static final int NUM_THREADS = 1; // Threads building ant tours in parallel
+    public static final boolean SPARSE_GRAPH = false; // Store pheromones only for joined cities
+    public static final boolean OFF_HEAP = false; // Keep the matrices outside the Java heap
+    public static final String OFF_HEAP_DIRECTORY = null; // Back off-heap matrices with files here, null for direct memory
+    public static final ACO.Precision PRECISION = ACO.Precision.DOUBLE; // FLOAT or FLOAT_QUANTISED_HEURISTICS to cut matrix memory
+    public static final String CHECKPOINT_FILE = "colony.ckpt"; // Where the colony state is saved
+    public static final int CHECKPOINT_PERIOD = 0; // Save the colony state every this many iterations, 0 for never
+    public static final boolean RESUME = false; // Continue the run saved in CHECKPOINT_FILE instead of starting over
+    public static final boolean LAZY_EVAPORATION = false; // Evaporate through a global scale factor
+    public static final boolean LOCAL_SEARCH = false; // Improve each tour with 2-opt and Or-opt
+    public static final ACO.Variant VARIANT = ACO.Variant.ANT_SYSTEM; // Pheromone update rule
+    public static final long TIME_BUDGET_MS = 0; // Stop after this much wall-clock time, 0 for no limit
+    public static final double TARGET_LENGTH = 0; // Stop once a tour this short is found, 0 for no target
+    public static final int MAX_STAGNANT_ITERATIONS = 0; // Stop after this many iterations without improvement, 0 for no limit
+    public static final long MAX_EVALUATIONS = 0; // Stop after this many tours, 0 for no limit
+    public static final boolean LEGACY_RANDOMS = false; // Use the original Park-Miller generator to reproduce old runs
+    public static final boolean VECTOR_SCORING = false; // Score dense rows with the Vector API, needs SYMMETRIC = false and vector/VectorRowScorer built
+    public static final boolean ROW_SAMPLING = false; // Draw the next city from a Fenwick tree over each row
+    public static final boolean VERIFY_LENGTHS = false; // Recompute every tour length to check the tracked one
+    public static final ACO.DistanceMetric DISTANCE_METRIC = ACO.DistanceMetric.EUCLIDEAN; // Metric for "label x y" files, TSPLIB files bring their own
+
+    public static void main(String[] args) throws IOException {
+        // Read the cities first, the colony is sized from the file
+        TspInstance instance = TspInstance.load(args.length > 0 ? args[0] : CITIES_FILE);
+        int numberOfCities = instance.size();
 
-    public static void main(String[] args) {
         // Create an instance of Ant Colony Optimization
-        ACO antColony = new ACO(NUM_ANTS, NUM_CITIES,
+        ACO antColony = new ACO(NUM_ANTS, numberOfCities,
                 PHEROMONE_WEIGHT, DISTANCE_WEIGHT, PHEROMONE_CONSTANT, 
                 EVAPORATION_RATE, MAX_PHEROMONE, START_CITY);
 
         // Initialize the ant colony
+        if (LEGACY_RANDOMS) {
+            antColony.setRandomSource(new Randoms(21));
+        }
+        antColony.setSymmetric(SYMMETRIC);
+        antColony.setSparse(SPARSE_GRAPH);
+        antColony.setOffHeap(OFF_HEAP);
+        antColony.setOffHeapDirectory(OFF_HEAP_DIRECTORY);
+        antColony.setPrecision(PRECISION);
         antColony.init();
+        antColony.setCandidateListSize(CANDIDATE_LIST_SIZE);
+        antColony.setThreadCount(NUM_THREADS);
+        antColony.setLazyEvaporation(LAZY_EVAPORATION);
+        antColony.setLocalSearch(LOCAL_SEARCH);
+        antColony.setVariant(VARIANT);
+        antColony.setVectorScoring(VECTOR_SCORING);
+        antColony.setRowSampling(ROW_SAMPLING);
+        antColony.setVerifyLengths(VERIFY_LENGTHS);
+        if (instance.getEdgeWeightType() != null) {
+            antColony.setDistanceMetric(ACO.DistanceMetric.valueOf(instance.getEdgeWeightType()));
+        } else {
+            antColony.setDistanceMetric(DISTANCE_METRIC);
+        }
+        antColony.setDistances(MappedMatrix.of(instance));
+        if (instance.getHeuristics() != null) {
+            antColony.setHeuristics(new MappedMatrix(numberOfCities, instance.getHeuristics()), instance.getHeuristicWeight());
+        }
+        antColony.setCandidateLists(instance.getCandidateLists());
+        antColony.setTimeBudget(TIME_BUDGET_MS);
+        antColony.setTargetLength(TARGET_LENGTH);
+        antColony.setMaxStagnantIterations(MAX_STAGNANT_ITERATIONS);
+        antColony.setMaxEvaluations(MAX_EVALUATIONS);
+        antColony.setCheckpoint(CHECKPOINT_FILE, CHECKPOINT_PERIOD);
 
-        // Read city information from a file
-        try 
-        {
-            File file = new File("cities.txt");
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
-
-            String lineData;
-            int cityIndex = 0;
-
-            // Process each lineData in the file to set city positions and connections
-            while ((lineData = bufferedReader.readLine()) != null) {
-                String[] cityInfo = lineData.split("\t");
-                antColony.setCityPosition(cityIndex, Integer.parseInt(cityInfo[1]), Integer.parseInt(cityInfo[2]));
-
-                // Join each city to every other city (excluding itself)
-                for (int otherCityIndex = 0; otherCityIndex < NUM_CITIES; otherCityIndex++) {
-                    if (cityIndex == otherCityIndex) continue;
-                    antColony.joinCity(cityIndex, otherCityIndex);
-                }
-
-                cityIndex++;
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+        // Set city positions and join each city to every other city
+        for (int cityIndex = 0; cityIndex < numberOfCities; cityIndex++) {
+            antColony.setCityPosition(cityIndex, instance.getX(cityIndex), instance.getY(cityIndex));
         }
+        antColony.joinAllCities();
 
         // Record the start time for optimization
         long startTime = System.currentTimeMillis();
 
         // Perform ant colony optimization
-        antColony.optimize(MAX_ITERATIONS);
+        if (RESUME) {
+            antColony.resume(CHECKPOINT_FILE, MAX_ITERATIONS);
+        } else {
+            antColony.optimize(MAX_ITERATIONS);
+        }
 
         // Record the end time after optimization
         long endTime = System.currentTimeMillis();
@@ -63,5 +102,6 @@ public class Main {
 
         // Print the elapsed time for the optimization process
         System.out.println("Elapsed time: " + (endTime - startTime) + "ms");
+        System.out.println("Stopped after " + antColony.getIterationsRun() + " iterations: " + antColony.getStopReason());
     }
 }
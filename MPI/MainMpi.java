@@ -1,5 +1,5 @@
 import mpi.*;
-import java.io.*;
+import java.io.IOException;
 
 public class MainMpi {
 
@@ -7,7 +7,7 @@ public class MainMpi {
     private static ACOMpi antColony;
     public static final int MAX_ITERATIONS = 3000;
     public static final int NUM_ANTS = 8;
-    public static final int NUM_CITIES = 37;
+    public static final String CITIES_FILE = "cities.txt"; // TSPLIB file or "label x y" records, overridden by the first argument
     public static final int MAX_PHEROMONE = 2;
     public static final int START_CITY = 0; // Source city
     public static final double PHEROMONE_WEIGHT = 0.5;
@@ -16,49 +16,40 @@ public class MainMpi {
     public static final double EVAPORATION_RATE = 0.5;
 
 
-    public static void main(String[] args) throws MPIException {
+    public static void main(String[] args) throws MPIException, IOException {
         // Initialize MPI
-        MPI.Init(args);
+        args = MPI.Init(args);
         
         // Get the rank and number of processes
         int rank = MPI.COMM_WORLD.Rank();
         int numberOfProcesses = MPI.COMM_WORLD.Size();
 
+        // Every rank reads the cities, the colony is sized from the file
+        TspInstance instance = TspInstance.load(args.length > 0 ? args[0] : CITIES_FILE);
+        int numberOfCities = instance.size();
+
         // Create an instance of ACOMpi for the ant colony optimization
-        antColony = new ACOMpi(NUM_ANTS, NUM_CITIES, PHEROMONE_WEIGHT, DISTANCE_WEIGHT,
+        antColony = new ACOMpi(NUM_ANTS, numberOfCities, PHEROMONE_WEIGHT, DISTANCE_WEIGHT,
                                 PHEROMONE_CONSTANT, EVAPORATION_RATE, 
                                     MAX_PHEROMONE, START_CITY, rank, numberOfProcesses);
 
         // Initialize the ant colony
         antColony.init();
+        if (instance.getEdgeWeightType() != null) {
+            antColony.setDistanceMetric(ACO.DistanceMetric.valueOf(instance.getEdgeWeightType()));
+        }
+        antColony.setDistances(MappedMatrix.of(instance));
 
-        try {
-            // Read city information from a file
-            java.io.File file = new File("cities.txt");
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
-
-            String lineData;
-            int cityIndex = 0;
-
-            // Process each lineData in the file to set city positions and connections
-            while ((lineData = bufferedReader.readLine()) != null) 
-            {
-                String[] cityInfo = lineData.split("\t");
-                antColony.setCityPosition(cityIndex, Integer.parseInt(cityInfo[1]), 
-                                            Integer.parseInt(cityInfo[2]));
-
-                // Connect each city to every other city (excluding itself)
-                for (int otherCityIndex = 0; otherCityIndex < NUM_CITIES; otherCityIndex++) {
-                    if (cityIndex == otherCityIndex) continue;
-                    antColony.connectCities(cityIndex, otherCityIndex);
-                }
+        // Set city positions and connections
+        for (int cityIndex = 0; cityIndex < numberOfCities; cityIndex++) 
+        {
+            antColony.setCityPosition(cityIndex, instance.getX(cityIndex), instance.getY(cityIndex));
 
-                cityIndex++;
+            // Connect each city to every other city (excluding itself)
+            for (int otherCityIndex = 0; otherCityIndex < numberOfCities; otherCityIndex++) {
+                if (cityIndex == otherCityIndex) continue;
+                antColony.connectCities(cityIndex, otherCityIndex);
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
         // Record the start time for optimization
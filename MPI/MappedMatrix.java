@@ -0,0 +1,90 @@
+import java.nio.DoubleBuffer;
+
+/**
+ * MappedMatrix is a read-only symmetric matrix over a packed upper triangle, normally a section of a
+ * memory-mapped instance file that lives outside the heap. Solvers on one host that open the same file
+ * share its pages instead of each holding a copy. Any attempt to write throws UnsupportedOperationException.
+ */
+public class MappedMatrix implements DoubleMatrix {
+
+    private final int size;
+    private final DoubleBuffer values;
+
+    /**
+     * values holds size * (size + 1) / 2 entries in the slot order of SymmetricMatrix.
+     */
+    public MappedMatrix(int size, DoubleBuffer values)
+    {
+        if (values.remaining() != (long) size * (size + 1) / 2)
+        {
+            throw new IllegalArgumentException("A packed matrix of " + size + " cities needs "
+                    + (long) size * (size + 1) / 2 + " values, not " + values.remaining());
+        }
+        this.size = size;
+        this.values = values;
+    }
+
+    /**
+     * The distances given by an instance, or null when it has none.
+     */
+    public static MappedMatrix of(TspInstance instance)
+    {
+        return instance.getDistances() == null ? null : new MappedMatrix(instance.size(), instance.getDistances());
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int length()
+    {
+        return values.capacity();
+    }
+
+    public int index(int row, int col)
+    {
+        if (row > col)
+        {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        return (int) (((long) row * (2 * size - row - 1)) >>> 1) + col;
+    }
+
+    public double get(int row, int col)
+    {
+        return values.get(index(row, col));
+    }
+
+    public void set(int row, int col, double value)
+    {
+        throw new UnsupportedOperationException("MappedMatrix is read-only");
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        throw new UnsupportedOperationException("MappedMatrix is read-only");
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        throw new UnsupportedOperationException("MappedMatrix is read-only");
+    }
+
+    public double getAt(int index)
+    {
+        return values.get(index);
+    }
+
+    public void setAt(int index, double value)
+    {
+        throw new UnsupportedOperationException("MappedMatrix is read-only");
+    }
+
+    public void fill(double value)
+    {
+        throw new UnsupportedOperationException("MappedMatrix is read-only");
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OffHeapBuffer is a long-indexed array of doubles or ints outside the Java heap, either in direct memory
+ * or in a memory-mapped scratch file. A buffer is indexed by int, so the array is split into chunks
+ * of 2^27 elements (1 GB of doubles). It is the storage behind OffHeapMatrix, the off-heap IntMatrix
+ * and the off-heap row trees of ACO.
+ */
+public class OffHeapBuffer {
+
+    private static final int CHUNK_SHIFT = 27;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final long length;
+    private final int elementBytes;
+    // typed views of the chunks, only the one for the element type is set
+    private final DoubleBuffer[] doubles;
+    private final IntBuffer[] ints;
+
+    /**
+     * Allocates length elements of elementBytes bytes, 8 for doubles or 4 for ints, in direct memory,
+     * which counts against -XX:MaxDirectMemorySize rather than -Xmx. The elements start out as 0.
+     */
+    public OffHeapBuffer(long length, int elementBytes)
+    {
+        this.length = length;
+        this.elementBytes = elementBytes;
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount()];
+        for (int chunk = 0; chunk < chunks.length; chunk++)
+        {
+            chunks[chunk] = ByteBuffer.allocateDirect(chunkBytes(chunk)).order(ByteOrder.nativeOrder());
+        }
+        this.doubles = elementBytes == 8 ? doubleViews(chunks) : null;
+        this.ints = elementBytes == 4 ? intViews(chunks) : null;
+    }
+
+    /**
+     * Maps the elements onto a new scratch file in the given directory. The file is deleted straight away
+     * and its space is released once the buffer is garbage collected.
+     */
+    public OffHeapBuffer(long length, int elementBytes, Path directory) throws IOException
+    {
+        this.length = length;
+        this.elementBytes = elementBytes;
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount()];
+        Path file = Files.createTempFile(directory, "aco-matrix", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            for (int chunk = 0; chunk < chunks.length; chunk++)
+            {
+                long offset = (long) elementBytes * ((long) chunk << CHUNK_SHIFT);
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, offset, chunkBytes(chunk))
+                        .order(ByteOrder.nativeOrder());
+            }
+        }
+        finally
+        {
+            // mappings outlive both the channel and the directory entry
+            try
+            {
+                Files.delete(file);
+            }
+            catch (IOException e)
+            {
+                file.toFile().deleteOnExit();
+            }
+        }
+        this.doubles = elementBytes == 8 ? doubleViews(chunks) : null;
+        this.ints = elementBytes == 4 ? intViews(chunks) : null;
+    }
+
+    /**
+     * Number of elements.
+     */
+    public long length()
+    {
+        return length;
+    }
+
+    public double getDouble(long index)
+    {
+        return doubles[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    public void setDouble(long index, double value)
+    {
+        doubles[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    public int getInt(long index)
+    {
+        return ints[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    public void setInt(long index, int value)
+    {
+        ints[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * Sets every double element to the given value.
+     */
+    public void fillDouble(double value)
+    {
+        for (DoubleBuffer chunk : doubles)
+        {
+            for (int index = 0; index < chunk.capacity(); index++)
+            {
+                chunk.put(index, value);
+            }
+        }
+    }
+
+    /**
+     * Sets every int element to the given value.
+     */
+    public void fillInt(int value)
+    {
+        for (IntBuffer chunk : ints)
+        {
+            for (int index = 0; index < chunk.capacity(); index++)
+            {
+                chunk.put(index, value);
+            }
+        }
+    }
+
+    private int chunkCount()
+    {
+        return (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    private int chunkBytes(int chunk)
+    {
+        return (int) (elementBytes * Math.min(1L << CHUNK_SHIFT, length - ((long) chunk << CHUNK_SHIFT)));
+    }
+
+    private static DoubleBuffer[] doubleViews(ByteBuffer[] chunks)
+    {
+        DoubleBuffer[] views = new DoubleBuffer[chunks.length];
+        for (int chunk = 0; chunk < chunks.length; chunk++)
+        {
+            views[chunk] = chunks[chunk].asDoubleBuffer();
+        }
+        return views;
+    }
+
+    private static IntBuffer[] intViews(ByteBuffer[] chunks)
+    {
+        IntBuffer[] views = new IntBuffer[chunks.length];
+        for (int chunk = 0; chunk < chunks.length; chunk++)
+        {
+            views[chunk] = chunks[chunk].asIntBuffer();
+        }
+        return views;
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * OffHeapMatrix stores a symmetric N x N matrix as its packed upper triangle outside the Java heap,
+ * either in direct memory or in a memory-mapped scratch file, so the largest matrices add nothing to the heap
+ * and nothing for the garbage collector to trace or copy. The triangle lives in an OffHeapBuffer.
+ * File-backed matrices can be paged out to their file by the operating system instead of to swap.
+ */
+public class OffHeapMatrix implements DoubleMatrix {
+
+    private final int size;
+    private final int length;
+    private final OffHeapBuffer values;
+
+    /**
+     * Allocates the matrix in direct memory, which counts against -XX:MaxDirectMemorySize rather than -Xmx.
+     */
+    public OffHeapMatrix(int size)
+    {
+        this.size = size;
+        this.length = packedLength(size);
+        this.values = new OffHeapBuffer(length, 8);
+    }
+
+    /**
+     * Maps the matrix onto a new scratch file in the given directory. The file is deleted straight away
+     * and its space is released once the matrix is garbage collected.
+     */
+    public OffHeapMatrix(int size, Path directory) throws IOException
+    {
+        this.size = size;
+        this.length = packedLength(size);
+        this.values = new OffHeapBuffer(length, 8, directory);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    public int index(int row, int col)
+    {
+        if (row > col)
+        {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        return (int) (((long) row * (2 * size - row - 1)) >>> 1) + col;
+    }
+
+    public double get(int row, int col)
+    {
+        return getAt(index(row, col));
+    }
+
+    public void set(int row, int col, double value)
+    {
+        setAt(index(row, col), value);
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        setAt(index(firstCity, secondCity), value);
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        int index = index(firstCity, secondCity);
+        setAt(index, getAt(index) + value);
+    }
+
+    public double getAt(int index)
+    {
+        return values.getDouble(index);
+    }
+
+    public void setAt(int index, double value)
+    {
+        values.setDouble(index, value);
+    }
+
+    public void fill(double value)
+    {
+        values.fillDouble(value);
+    }
+
+    private static int packedLength(int size)
+    {
+        long length = (long) size * (size + 1) / 2;
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Too many cities for a packed matrix: " + size);
+        }
+        return (int) length;
+    }
+}
@@ -0,0 +1,91 @@
+import java.io.IOException;
+
+/**
+ * PrecisionBenchmark checks that reduced-precision matrices do not cost tour quality.
+ * It solves one instance with every ACO.Precision over the same seeds, using the colony settings of Main,
+ * and prints the mean and best tour length, the mean gap to DOUBLE and the mean time.
+ *
+ * Usage: java PrecisionBenchmark [instance] [runs] [iterations]
+ */
+public class PrecisionBenchmark {
+
+    public static final int RUNS = 10;
+    public static final int ITERATIONS = 200;
+
+    public static void main(String[] args) throws IOException
+    {
+        TspInstance instance = TspInstance.load(args.length > 0 ? args[0] : Main.CITIES_FILE);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : RUNS;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : ITERATIONS;
+        System.out.println(instance.getName() + ": " + instance.size() + " cities, " + runs + " runs of "
+                + iterations + " iterations");
+
+        double doubleMean = 0.0;
+        for (ACO.Precision precision : ACO.Precision.values())
+        {
+            double sum = 0.0;
+            double best = Double.MAX_VALUE;
+            long elapsed = 0;
+            for (int seed = 0; seed < runs; seed++)
+            {
+                ACO antColony = newColony(instance, precision, seed);
+                double[] length = {Double.MAX_VALUE};
+                antColony.addTourListener((iteration, tourLength, tour) -> length[0] = tourLength);
+                long startTime = System.nanoTime();
+                antColony.optimize(iterations);
+                elapsed += System.nanoTime() - startTime;
+                sum += length[0];
+                best = Math.min(best, length[0]);
+            }
+            double mean = sum / runs;
+            if (precision == ACO.Precision.DOUBLE)
+            {
+                doubleMean = mean;
+            }
+            System.out.printf("%-28s mean %.2f  best %.2f  gap %+.3f%%  time %dms%n", precision, mean, best,
+                    100.0 * (mean - doubleMean) / doubleMean, elapsed / runs / 1000000);
+        }
+    }
+
+    /**
+     * Sets up a colony the way Main does, seeded per run so every precision sees the same seeds.
+     */
+    private static ACO newColony(TspInstance instance, ACO.Precision precision, int seed)
+    {
+        int numberOfCities = instance.size();
+        ACO antColony = new ACO(Main.NUM_ANTS, numberOfCities,
+                Main.PHEROMONE_WEIGHT, Main.DISTANCE_WEIGHT, Main.PHEROMONE_CONSTANT,
+                Main.EVAPORATION_RATE, Main.MAX_PHEROMONE, Main.START_CITY);
+        antColony.setRandomSource(new SplittableRandoms(seed));
+        antColony.setSymmetric(Main.SYMMETRIC);
+        antColony.setPrecision(precision);
+        antColony.init();
+        antColony.setCandidateListSize(Main.CANDIDATE_LIST_SIZE);
+        antColony.setThreadCount(Main.NUM_THREADS);
+        antColony.setLazyEvaporation(Main.LAZY_EVAPORATION);
+        antColony.setLocalSearch(Main.LOCAL_SEARCH);
+        antColony.setVariant(Main.VARIANT);
+        antColony.setRowSampling(Main.ROW_SAMPLING);
+        if (instance.getEdgeWeightType() != null)
+        {
+            antColony.setDistanceMetric(ACO.DistanceMetric.valueOf(instance.getEdgeWeightType()));
+        }
+        else
+        {
+            antColony.setDistanceMetric(Main.DISTANCE_METRIC);
+        }
+        antColony.setDistances(MappedMatrix.of(instance));
+        if (instance.getHeuristics() != null)
+        {
+            antColony.setHeuristics(new MappedMatrix(numberOfCities, instance.getHeuristics()), instance.getHeuristicWeight());
+        }
+        antColony.setCandidateLists(instance.getCandidateLists());
+
+        for (int cityIndex = 0; cityIndex < numberOfCities; cityIndex++)
+        {
+            antColony.setCityPosition(cityIndex, instance.getX(cityIndex), instance.getY(cityIndex));
+        }
+        antColony.joinAllCities();
+        return antColony;
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * QuantisedMatrix stores each entry in 16 bits as the upper half of a float (the bfloat16 format),
+ * rounded to nearest, in the slot layout of another matrix of the same shape.
+ * It keeps the full float exponent range with about three significant digits, a quarter of the memory
+ * of a double layout. Meant for write-once matrices such as the heuristics; addEdge rounds on every call.
+ */
+public class QuantisedMatrix implements DoubleMatrix {
+
+    private final DoubleMatrix layout;
+    final short[] values;
+
+    /**
+     * Creates a zero matrix addressed like layout, whose own values are never touched.
+     */
+    public QuantisedMatrix(DoubleMatrix layout)
+    {
+        this.layout = layout;
+        this.values = new short[layout.length()];
+    }
+
+    public int size()
+    {
+        return layout.size();
+    }
+
+    public int length()
+    {
+        return values.length;
+    }
+
+    public int index(int row, int col)
+    {
+        return layout.index(row, col);
+    }
+
+    public double get(int row, int col)
+    {
+        return decode(values[layout.index(row, col)]);
+    }
+
+    public void set(int row, int col, double value)
+    {
+        values[layout.index(row, col)] = encode(value);
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        values[layout.index(firstCity, secondCity)] = encode(value);
+        values[layout.index(secondCity, firstCity)] = encode(value);
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        int firstSlot = layout.index(firstCity, secondCity);
+        int secondSlot = layout.index(secondCity, firstCity);
+        values[firstSlot] = encode(decode(values[firstSlot]) + value);
+        if (secondSlot != firstSlot)
+        {
+            values[secondSlot] = encode(decode(values[secondSlot]) + value);
+        }
+    }
+
+    public double getAt(int index)
+    {
+        return decode(values[index]);
+    }
+
+    public void setAt(int index, double value)
+    {
+        values[index] = encode(value);
+    }
+
+    public void fill(double value)
+    {
+        Arrays.fill(values, encode(value));
+    }
+
+    /**
+     * Rounds to the nearest bfloat16, ties to even. NaN and infinity are not expected here.
+     */
+    static short encode(double value)
+    {
+        int bits = Float.floatToRawIntBits((float) value);
+        bits += 0x7fff + ((bits >>> 16) & 1);
+        return (short) (bits >>> 16);
+    }
+
+    static double decode(short value)
+    {
+        return Float.intBitsToFloat(value << 16);
+    }
+}
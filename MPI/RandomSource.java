@@ -0,0 +1,23 @@
+/**
+ * RandomSource is the uniform generator the ACO engine draws from.
+ * A source is not thread-safe; split() hands out an independent stream for another ant, thread or rank.
+ */
+public interface RandomSource {
+
+    /**
+     * Next number uniformly distributed in [0, 1).
+     */
+    double generateUniform();
+
+    /**
+     * A new generator whose stream is independent of this one. Advances this generator's state.
+     */
+    RandomSource split();
+
+    /**
+     * The generator's current state, for checkpoints. setState() with it continues the same stream.
+     */
+    long[] getState();
+
+    void setState(long[] state);
+}
@@ -5,9 +5,11 @@ import static java.lang.Math.log;
 
 /**
  * Randoms class provides methods for generating random numbers using different distributions.
+ * Its uniform generator is the original Park-Miller shuffle, kept as a RandomSource so that
+ * runs made before SplittableRandoms became the default can be reproduced.
  */
 //class for generating random numbers using different distributions.
-    public class Randoms {
+    public class Randoms implements RandomSource {
         
         public static final int MULTIPLIER  = 16807;
         public static final int MODULUS  = Integer.MAX_VALUE;
@@ -27,8 +29,11 @@ import static java.lang.Math.log;
         private long[] xpto;
         
         private Random randomGenerator;
+        private final long seed;
+        private long splits;
         // Constructor initializing the state variables
         public Randoms(long x) {
+            this.seed = x;
             this.xpto = new long[2];
             this.xpto[0] = -x;
             randomGenerator = new Random();
@@ -42,6 +47,34 @@ import static java.lang.Math.log;
             return random1(this.xpto);
         }
         
+        /**
+         * Returns generators seeded seed + 1, seed + 2, ... in turn, which is how the colony used to seed
+         * its extra construction threads.
+         */
+        public RandomSource split() {
+            return new Randoms(seed + ++splits);
+        }
+        
+        /**
+         * The uniform generator's state: the Park-Miller value, the shuffle table and the split counter.
+         * The Gaussian generator's cached value is left out, the colony never draws from it.
+         */
+        public long[] getState() {
+            long[] state = new long[3 + TABLE_SIZE];
+            state[0] = xpto[0];
+            state[1] = previousValue;
+            state[2] = splits;
+            System.arraycopy(shuffleTable, 0, state, 3, TABLE_SIZE);
+            return state;
+        }
+        
+        public void setState(long[] state) {
+            xpto[0] = state[0];
+            previousValue = state[1];
+            splits = state[2];
+            System.arraycopy(state, 3, shuffleTable, 0, TABLE_SIZE);
+        }
+        
         public double random1(long[] idum) { //Generates a random number from a uniform distribution 
             int j;
             long k;
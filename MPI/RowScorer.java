@@ -0,0 +1,18 @@
+/**
+ * RowScorer holds the two row-wide loops of a construction step over the dense choice-info matrix:
+ * turning a row into selection weights, and walking those weights for the roulette draw.
+ */
+public interface RowScorer {
+
+    /**
+     * Writes weights[city] = row[offset + city] * open[city] for every city below length, where open[city]
+     * is 1 for a city the ant may still visit and 0 otherwise, and returns the sum of the weights.
+     */
+    double score(double[] row, int offset, double[] open, double[] weights, int length);
+
+    /**
+     * Returns the first city whose running sum of weights exceeds target, skipping cities of weight 0,
+     * or the last city of positive weight if rounding keeps the sum at or below target.
+     */
+    int select(double[] weights, int length, double target);
+}
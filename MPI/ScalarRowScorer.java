@@ -0,0 +1,50 @@
+/**
+ * ScalarRowScorer is the plain-loop RowScorer, used when the Vector API is not available.
+ */
+public class ScalarRowScorer implements RowScorer {
+
+    public double score(double[] row, int offset, double[] open, double[] weights, int length)
+    {
+        double total = 0.0;
+        for (int city = 0; city < length; city++)
+        {
+            weights[city] = row[offset + city] * open[city];
+            total += weights[city];
+        }
+        return total;
+    }
+
+    public int select(double[] weights, int length, double target)
+    {
+        return select(weights, 0, length, 0.0, target);
+    }
+
+    /**
+     * Scalar walk over weights[from, length) starting from the running sum already reached before from.
+     */
+    static int select(double[] weights, int from, int length, double sum, double target)
+    {
+        int lastCity = -1;
+        for (int city = from; city < length; city++)
+        {
+            if (weights[city] > 0.0)
+            {
+                lastCity = city;
+                sum += weights[city];
+                if (sum > target)
+                {
+                    return city;
+                }
+            }
+        }
+        // rounding left the running sum just short of the target
+        for (int city = from - 1; lastCity < 0 && city >= 0; city--)
+        {
+            if (weights[city] > 0.0)
+            {
+                lastCity = city;
+            }
+        }
+        return lastCity;
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * SparseMatrix stores one value per edge slot of a CsrGraph, so memory grows with the number of
+ * edges rather than N^2. Entries between cities that are not connected read as 0 and cannot be set.
+ */
+public class SparseMatrix implements DoubleMatrix {
+
+    private final CsrGraph graph;
+    final double[] values;
+
+    public SparseMatrix(CsrGraph graph)
+    {
+        this.graph = graph;
+        this.values = new double[graph.edgeCount()];
+    }
+
+    public int size()
+    {
+        return graph.size();
+    }
+
+    public int length()
+    {
+        return values.length;
+    }
+
+    public int index(int row, int col)
+    {
+        return graph.edge(row, col);
+    }
+
+    public double get(int row, int col)
+    {
+        int slot = graph.edge(row, col);
+        return slot >= 0 ? values[slot] : 0.0;
+    }
+
+    public void set(int row, int col, double value)
+    {
+        values[slot(row, col)] = value;
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        values[slot(firstCity, secondCity)] = value;
+        values[slot(secondCity, firstCity)] = value;
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        values[slot(firstCity, secondCity)] += value;
+        values[slot(secondCity, firstCity)] += value;
+    }
+
+    public double getAt(int index)
+    {
+        return values[index];
+    }
+
+    public void setAt(int index, double value)
+    {
+        values[index] = value;
+    }
+
+    public void fill(double value)
+    {
+        Arrays.fill(values, value);
+    }
+
+    private int slot(int row, int col)
+    {
+        int slot = graph.edge(row, col);
+        if (slot < 0)
+        {
+            throw new IllegalArgumentException("Cities " + row + " and " + col + " are not connected");
+        }
+        return slot;
+    }
+}
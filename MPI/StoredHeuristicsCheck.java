@@ -0,0 +1,50 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * StoredHeuristicsCheck converts an instance with heuristics for Main.DISTANCE_WEIGHT, loads the file back
+ * and checks that a colony with the weights of Main uses the stored heuristic matrix instead of computing
+ * its own. Exits with status 1 if it does not.
+ *
+ * Usage: java StoredHeuristicsCheck [instance]
+ */
+public class StoredHeuristicsCheck {
+
+    public static void main(String[] args) throws IOException
+    {
+        TspInstance source = TspInstance.load(args.length > 0 ? args[0] : Main.CITIES_FILE);
+        File converted = File.createTempFile("heuristics", ".aco");
+        converted.deleteOnExit();
+        InstanceConverter.write(source, converted.getPath(), 0, true, Main.DISTANCE_WEIGHT);
+
+        TspInstance instance = TspInstance.load(converted.getPath());
+        int numberOfCities = instance.size();
+        ACO antColony = new ACO(Main.NUM_ANTS, numberOfCities,
+                Main.PHEROMONE_WEIGHT, Main.DISTANCE_WEIGHT, Main.PHEROMONE_CONSTANT,
+                Main.EVAPORATION_RATE, Main.MAX_PHEROMONE, Main.START_CITY);
+        antColony.setSymmetric(true);
+        antColony.setPrecision(ACO.Precision.DOUBLE);
+        antColony.init();
+        if (instance.getEdgeWeightType() != null)
+        {
+            antColony.setDistanceMetric(ACO.DistanceMetric.valueOf(instance.getEdgeWeightType()));
+        }
+        antColony.setDistances(MappedMatrix.of(instance));
+        MappedMatrix stored = new MappedMatrix(numberOfCities, instance.getHeuristics());
+        antColony.setHeuristics(stored, instance.getHeuristicWeight());
+        for (int cityIndex = 0; cityIndex < numberOfCities; cityIndex++)
+        {
+            antColony.setCityPosition(cityIndex, instance.getX(cityIndex), instance.getY(cityIndex));
+        }
+        antColony.joinAllCities();
+        antColony.optimize(1);
+
+        if (antColony.heuristics != stored)
+        {
+            System.err.println("FAIL: the colony computed its own heuristics instead of using the stored ones");
+            System.exit(1);
+        }
+        System.out.println("OK: " + numberOfCities + " cities, stored heuristics for weight "
+                + instance.getHeuristicWeight() + " used as they are");
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+/**
+ * SymmetricMatrix stores a symmetric N x N matrix as its packed upper triangle,
+ * so (row, col) and (col, row) share one slot and memory is roughly halved.
+ */
+public class SymmetricMatrix implements DoubleMatrix {
+
+    private final int size;
+    final double[] values;
+
+    public SymmetricMatrix(int size)
+    {
+        if ((long) size * (size + 1) / 2 > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException("Too many cities for a packed matrix: " + size);
+        }
+        this.size = size;
+        this.values = new double[size * (size + 1) / 2];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int length()
+    {
+        return values.length;
+    }
+
+    public int index(int row, int col)
+    {
+        if (row > col)
+        {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        // rows 0..row-1 of the upper triangle hold size + (size - 1) + ... + (size - row + 1) slots
+        return (int) (((long) row * (2 * size - row - 1)) >>> 1) + col;
+    }
+
+    public double get(int row, int col)
+    {
+        return values[index(row, col)];
+    }
+
+    public void set(int row, int col, double value)
+    {
+        values[index(row, col)] = value;
+    }
+
+    public void setEdge(int firstCity, int secondCity, double value)
+    {
+        values[index(firstCity, secondCity)] = value;
+    }
+
+    public void addEdge(int firstCity, int secondCity, double value)
+    {
+        values[index(firstCity, secondCity)] += value;
+    }
+
+    public double getAt(int index)
+    {
+        return values[index];
+    }
+
+    public void setAt(int index, double value)
+    {
+        values[index] = value;
+    }
+
+    public void fill(double value)
+    {
+        Arrays.fill(values, value);
+    }
+}
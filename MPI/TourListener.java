@@ -0,0 +1,13 @@
+/**
+ * TourListener is notified by ACO.optimize() every time the best-so-far tour gets shorter,
+ * so callers can use a good tour long before the run ends.
+ * It is called on the thread running optimize() and should return quickly.
+ */
+public interface TourListener {
+
+    /**
+     * Called once per iteration that improved the best tour.
+     * The tour starts at the start city and is a copy the listener may keep.
+     */
+    void onImprovement(int iteration, double length, int[] tour);
+}
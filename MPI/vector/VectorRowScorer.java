@@ -0,0 +1,55 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorRowScorer runs the row loops with the incubating Vector API. Scoring is a lane-wise multiply of the row
+ * by the 0/1 open mask with a lane-wise running total; selection skips whole chunks by their lane sum and only
+ * walks the chunk that crosses the target one city at a time.
+ * It sits in a source directory of its own so that the rest of MPI/ compiles with a plain javac.
+ * Build it on top of the other classes and run with the module added:
+ *   javac --add-modules jdk.incubator.vector -cp . -d . vector/VectorRowScorer.java
+ *   java --add-modules jdk.incubator.vector Main
+ * ACO loads this class reflectively and falls back to ScalarRowScorer when it or the module is missing.
+ */
+public class VectorRowScorer implements RowScorer {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public double score(double[] row, int offset, double[] open, double[] weights, int length)
+    {
+        int upperBound = SPECIES.loopBound(length);
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int city = 0;
+        for (; city < upperBound; city += SPECIES.length())
+        {
+            DoubleVector weight = DoubleVector.fromArray(SPECIES, row, offset + city).mul(DoubleVector.fromArray(SPECIES, open, city));
+            weight.intoArray(weights, city);
+            sum = sum.add(weight);
+        }
+        double total = sum.reduceLanes(VectorOperators.ADD);
+        for (; city < length; city++)
+        {
+            weights[city] = row[offset + city] * open[city];
+            total += weights[city];
+        }
+        return total;
+    }
+
+    public int select(double[] weights, int length, double target)
+    {
+        int upperBound = SPECIES.loopBound(length);
+        double sum = 0.0;
+        int city = 0;
+        for (; city < upperBound; city += SPECIES.length())
+        {
+            double chunk = DoubleVector.fromArray(SPECIES, weights, city).reduceLanes(VectorOperators.ADD);
+            if (sum + chunk > target)
+            {
+                break;
+            }
+            sum += chunk;
+        }
+        return ScalarRowScorer.select(weights, city, length, sum, target);
+    }
+}
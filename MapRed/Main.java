@@ -75,6 +75,7 @@ public class Main {
 			
 			int[] bestRoute; // Represents the best route in the current iteration
 			int[][] antRoutes; // Stores the routes of all ants from 0 to ANTSIZE-1
+			long[][] visitedCities; // Tabu bitset of every ant, bit c is set once city c is on the route
 			double[][] cityCoordinates;// CITIES[i][j] stands for the calculateDistanceBetweenCities between city i and city j
 			double[][] pheromones; // Represents the pheromones on every edge
 			double[][] deltaPheromones; // Stores the changes in pheromone levels
@@ -106,6 +107,7 @@ public class Main {
 				this.distanceMatrix = new double[TOTAL_CITIES][TOTAL_CITIES];
 				
 				antRoutes = new int[TOTAL_ANTS][TOTAL_CITIES];
+				visitedCities = new long[TOTAL_ANTS][(TOTAL_CITIES + 63) >>> 6];
 				bestRoute = new int[TOTAL_CITIES];
 				for (int row = 0; row < TOTAL_CITIES; row++) {
 					bestRoute[row] = -1;
@@ -156,7 +158,9 @@ public class Main {
 			
 		
 			private void route(int antIndex) { //Determines the route for a given ant based on the current city and available probabilities
+				Arrays.fill(visitedCities[antIndex], 0L);
 				antRoutes[antIndex][0] = INITIAL_CITY;
+				markVisited(antIndex, INITIAL_CITY);
 				for (int currentIndex  = 0; currentIndex  < TOTAL_CITIES - 1; currentIndex ++) {
 					int currentCity  = antRoutes[antIndex][currentIndex ];
 					int count = 0;
@@ -176,7 +180,9 @@ public class Main {
 					if (count==0) {
 						return;
 					}
-					antRoutes[antIndex][currentIndex  + 1] = city();
+					int selectedCity = city();
+					antRoutes[antIndex][currentIndex  + 1] = selectedCity;
+					markVisited(antIndex, selectedCity);
 				}
 			}
 			
@@ -192,15 +198,11 @@ public class Main {
 			}
 			
 			private boolean visited(int antIndex, int nextCity ) { //Checks if a city has been visited by a specific ant during its route.
-				for (int cityIndex  = 0; cityIndex  < TOTAL_CITIES; cityIndex ++) {  // Iterate through the ant's route to check if the city has been visited
-					if (antRoutes[antIndex][cityIndex ] == -1) {
-						break;
-					}
-					if (antRoutes[antIndex][cityIndex ] == nextCity ) {
-						return true;
-					}
-				}
-				return false;
+				return (visitedCities[antIndex][nextCity >>> 6] & (1L << nextCity)) != 0;
+			}
+			
+			private void markVisited(int antIndex, int city) { //Records a city in the ant's tabu bitset.
+				visitedCities[antIndex][city >>> 6] |= 1L << city;
 			}
 			
 			//Initializes the pheromone levels between two cities with random values.
@@ -263,6 +265,7 @@ public class Main {
 			
 			
 			private int checkRouteValidity(int antIndex, int iteration) { // Checks the validity of the route traversed by an ant in the ant colony optimization process.
+				Arrays.fill(visitedCities[antIndex], 0L);
 				for (int currentIndex = 0; currentIndex < TOTAL_CITIES - 1; currentIndex++) {
 					int currentCity = antRoutes[antIndex][currentIndex];
 					int nextCity = antRoutes[antIndex][currentIndex + 1];
@@ -273,12 +276,15 @@ public class Main {
 					}
 					
 				
-					for (int previousIndex = 0; previousIndex < currentIndex - 1; previousIndex++) {
-						if (antRoutes[antIndex][currentIndex] == antRoutes[antIndex][previousIndex]) {
-							return -3; // if the City revisited, invalid route
-						}
+					if (visited(antIndex, currentCity)) {
+						return -3; // if the City revisited, invalid route
 					}
+					markVisited(antIndex, currentCity);
+				}
+				if (visited(antIndex, antRoutes[antIndex][TOTAL_CITIES - 1])) {
+					return -3;
 				}
+				markVisited(antIndex, antRoutes[antIndex][TOTAL_CITIES - 1]);
 				return 0;
 			}
 			
@@ -121,19 +121,26 @@ public class ACOSpark {
     /**
      * Checks to see if an Ant has visited a city or not
      * 
-     * @param nums the cities visited so far
+     * @param tabu the bitset of cities visited so far
      * @param c the city in question
      * @return true if the city has been visited by the Ant, else false
      * 
      */
 
-    public static boolean visited(int[] nums, int c){
-        for(int i = 0; i < nums.length; i++){
-            if(nums[i] == c){
-                return true;
-            }
-        }
-        return false;
+    public static boolean visited(long[] tabu, int c){
+        return (tabu[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Records a city in an Ant's tabu bitset
+     * 
+     * @param tabu the bitset of cities visited so far
+     * @param c the city just visited
+     * 
+     */
+
+    public static void markVisited(long[] tabu, int c){
+        tabu[c >>> 6] |= 1L << c;
     }
 
     /**
@@ -222,28 +229,24 @@ public class ACOSpark {
         }
 
         //  Read in the city coordinates from the given file
+        // TOTAL_CITIES is a compile-time constant because the executors see it too, so the file has to match it
+        TspInstance instance;
         try {
-            File file = new File("cities.txt");
-            BufferedReader bf = new BufferedReader(new FileReader(file));
-            String line;
-            int x = 0;
-
-            while ((line = bf.readLine()) != null) {
-                String[] words = line.split("\t");
-                System.out.println(words);
-                setCityPosition(x, Integer.parseInt(words[1]), Integer.parseInt(words[2]));
-
-                for (int j = 0; j < TOTAL_CITIES; j++ ) {
-                    if (x == j) continue;
-                    connectCities(x, j);
-                }
-                x++;
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            instance = TspInstance.load("cities.txt");
         } catch (IOException e) {
-            e.printStackTrace();
-        }        
+            throw new UncheckedIOException(e);
+        }
+        if (instance.size() != TOTAL_CITIES) {
+            throw new IllegalArgumentException(instance.getName() + " has " + instance.size() + " cities but TOTAL_CITIES is " + TOTAL_CITIES);
+        }
+        for (int x = 0; x < TOTAL_CITIES; x++) {
+            setCityPosition(x, instance.getX(x), instance.getY(x));
+
+            for (int j = 0; j < TOTAL_CITIES; j++ ) {
+                if (x == j) continue;
+                connectCities(x, j);
+            }
+        }
 
         // Declare JavaPairRDD for distances to Ants
 	    JavaPairRDD<java.lang.Double, Ant> pnetwork = null;
@@ -259,15 +262,18 @@ public class ACOSpark {
 
             // Take the Ants and perform the ACO algorithm
             // Will return a new RDD of distances and Ants
+            final int iteration = iterations;
 		    pnetwork = network.mapToPair(new PairFunction<Ant, java.lang.Double, Ant>() { 
                 @Override
                 public Tuple2 <java.lang.Double, Ant> call(Ant v) {
                     int[] route = new int[TOTAL_CITIES];
+                    long[] tabu = new long[(TOTAL_CITIES + 63) >>> 6];
                     double alpha = 0.5;
                     double beta = 0.8;   
-                    Randoms randoms = new Randoms(21); 
+                    // one stream per ant and iteration, a shared seed made every ant walk the same tour
+                    RandomSource randoms = new SplittableRandoms(21, (long) iteration * TOTAL_ANTS + v.antNumber); 
                     Ant result = v;
-                    double [][] PROBS = new double[37][];
+                    double [][] PROBS = new double[TOTAL_CITIES][];
 
                     for (int i = 0; i < TOTAL_CITIES; i++) {
                         PROBS[i] = new double[2];
@@ -278,6 +284,7 @@ public class ACOSpark {
 
                     // Calculate the route traveled by the Ant
                     route[0] = 0;
+                    markVisited(tabu, route[0]);
                     for (int i = 0; i < TOTAL_CITIES - 1; i++) {
                         int cityi = route[i];
                         int count = 0;
@@ -290,14 +297,14 @@ public class ACOSpark {
 
                             // Calculate the probability of visiting the next city based on distance and pheromone level
                             // Utilizes the Spark Broadcast to retrieve the distances and pheromone levels
-                            if (!visited(route, c)) {
+                            if (!visited(tabu, c)) {
                                 double ETAij = Math.pow(1 / distance(cityi, c, broadcastVar1.value()), beta);
                                 double TAUij = Math.pow((broadcastVar.value())[cityi][c], alpha);
 
                                 // Calculate the sum of probabilities for visiing the unvisited neighboring cities
                                 double sum = 0.0;
                                 for (int d = 0; d < TOTAL_CITIES; d++) {
-                                    if (!visited(route, d)) {
+                                    if (!visited(tabu, d)) {
                                         double ETA = Math.pow(1 / distance(cityi, d, broadcastVar1.value()), beta);
                                         double TAU = Math.pow((broadcastVar.value())[cityi][d], alpha);
                                         sum += ETA * TAU;
@@ -320,6 +327,7 @@ public class ACOSpark {
                             sum += PROBS[y][0];
                         }                      
                         route[i + 1] = (int) PROBS[y][1]; // Add the next city to the route
+                        markVisited(tabu, route[i + 1]);
                     }
 
                     // Return the distance and the Ant back to pnetwork